@@ -0,0 +1,129 @@
+package com.kesierzg.securevault.benchmark;
+
+import com.kesierzg.securevault.service.CipherEngine;
+import com.kesierzg.securevault.service.EncryptionService;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import javax.crypto.spec.SecretKeySpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CryptoBenchmark {
+
+    @Param({"16", "256", "4096", "65536"})
+    public int length;
+
+    private final EncryptionService encryptionService = new EncryptionService();
+    private SecretKeySpec key;
+    private byte[] iv;
+    private byte[] salt;
+    private String plainText;
+    private String cipherText;
+    private byte[] aad;
+    private String sealedText;
+    private CipherEngine engine;
+    private ByteBuffer plainBuffer;
+    private ByteBuffer cbcBuffer;
+    private ByteBuffer gcmBuffer;
+    private ByteBuffer outBuffer;
+    private byte[] nonce;
+    private long counter;
+
+    @Setup
+    public void setUp() throws Exception {
+        key = encryptionService.generateDataKey();
+        iv = encryptionService.generateIv();
+        salt = encryptionService.generateSalt();
+        plainText = "x".repeat(length);
+        cipherText = encryptionService.encrypt(plainText, key, iv);
+        aad = EncryptionService.fieldAad("0123456789abcdef", "password");
+        sealedText = encryptionService.encryptField(plainText, key, aad);
+
+        engine = encryptionService.getCipherEngine();
+        plainBuffer = ByteBuffer.allocateDirect(length);
+        plainBuffer.put(plainText.getBytes(StandardCharsets.UTF_8)).flip();
+        outBuffer = ByteBuffer.allocateDirect(engine.encryptedLength(length) + CipherEngine.TAG_LENGTH);
+        cbcBuffer = ByteBuffer.allocateDirect(engine.encryptedLength(length));
+        engine.encrypt(plainBuffer.duplicate(), cbcBuffer, key, iv);
+        cbcBuffer.flip();
+        nonce = new byte[12];
+        gcmBuffer = ByteBuffer.allocateDirect(length + CipherEngine.TAG_LENGTH);
+        engine.seal(plainBuffer.duplicate(), gcmBuffer, key, nonce, aad);
+        gcmBuffer.flip();
+    }
+
+    private byte[] nextNonce() {
+        byte[] fresh = nonce.clone();
+        ByteBuffer.wrap(fresh, 4, 8).putLong(++counter);
+        return fresh;
+    }
+
+    @Benchmark
+    public String encrypt() throws Exception {
+        return encryptionService.encrypt(plainText, key, iv);
+    }
+
+    @Benchmark
+    public String decrypt() throws Exception {
+        return encryptionService.decrypt(cipherText, key, iv);
+    }
+
+    @Benchmark
+    public String encryptField() throws Exception {
+        return encryptionService.encryptField(plainText, key, aad);
+    }
+
+    @Benchmark
+    public String decryptField() throws Exception {
+        return encryptionService.decryptField(sealedText, key, null, aad);
+    }
+
+    @Benchmark
+    public int bulkEncryptCbc() throws Exception {
+        outBuffer.clear();
+        return engine.encrypt(plainBuffer.duplicate(), outBuffer, key, iv);
+    }
+
+    @Benchmark
+    public int bulkDecryptCbc() throws Exception {
+        outBuffer.clear();
+        return engine.decrypt(cbcBuffer.duplicate(), outBuffer, key, iv);
+    }
+
+    @Benchmark
+    public int bulkSeal() throws Exception {
+        outBuffer.clear();
+        return engine.seal(plainBuffer.duplicate(), outBuffer, key, nextNonce(), aad);
+    }
+
+    @Benchmark
+    public int bulkOpen() throws Exception {
+        outBuffer.clear();
+        return engine.open(gcmBuffer.duplicate(), outBuffer, key, nonce, aad);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 10)
+    public SecretKeySpec deriveKey() throws Exception {
+        return encryptionService.generateKeyFromPassword(SyntheticVault.PASSWORD, salt);
+    }
+}
@@ -0,0 +1,72 @@
+package com.kesierzg.securevault.benchmark;
+
+import com.kesierzg.securevault.service.ExportService;
+import com.kesierzg.securevault.service.ImportService;
+import com.kesierzg.securevault.service.VaultService;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class ImportExportBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private final ImportService importService = new ImportService();
+    private final ExportService exportService = new ExportService();
+    private Path directory;
+    private File exportFile;
+    private File importFile;
+    private VaultService vault;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = SyntheticVault.tempDirectory();
+        exportFile = directory.resolve("export.json").toFile();
+        importFile = directory.resolve("import.json").toFile();
+        vault = SyntheticVault.create(size, 0);
+        exportService.exportToBitwarden(vault, importFile, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        vault.close();
+        SyntheticVault.delete(directory);
+    }
+
+    @Benchmark
+    public void export() throws Exception {
+        exportService.exportToBitwarden(vault, exportFile, false);
+    }
+
+    @Benchmark
+    public int importStreaming(Blackhole blackhole) throws Exception {
+        return importService.importFromBitwarden(importFile, blackhole::consume);
+    }
+
+    @Benchmark
+    public void importIntoVault() throws Exception {
+        VaultService target = new VaultService(SyntheticVault.PASSWORD, 1);
+        target.addEntries(importService.importFromBitwarden(importFile));
+    }
+}
@@ -0,0 +1,85 @@
+package com.kesierzg.securevault.benchmark;
+
+import com.kesierzg.securevault.service.VaultFormat;
+import com.kesierzg.securevault.service.VaultService;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class StorageFormatBenchmark {
+
+    private static final Path SIZES = Path.of(System.getProperty("securevault.jmh.sizes", "build/reports/jmh/storage-sizes.csv"));
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"JSON", "SEGMENTED", "COMPRESSED"})
+    public VaultFormat format;
+
+    private Path directory;
+    private File file;
+    private File otherFile;
+    private VaultService vault;
+    private int saves;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = SyntheticVault.tempDirectory();
+        file = SyntheticVault.vaultFile(directory);
+        otherFile = directory.resolve("other.dat").toFile();
+        vault = SyntheticVault.create(size, size / 10);
+        vault.setFormat(format);
+        vault.saveToFile(file);
+        recordSize(SyntheticVault.sizeOnDisk(file));
+    }
+
+    private void recordSize(long bytes) throws IOException {
+        Files.createDirectories(SIZES.toAbsolutePath().getParent());
+        Files.writeString(SIZES, format + "," + size + "," + bytes + System.lineSeparator(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        vault.close();
+        SyntheticVault.delete(directory);
+    }
+
+    @Benchmark
+    public void save() {
+        vault.saveToFile((saves++ & 1) == 0 ? otherFile : file);
+    }
+
+    @Benchmark
+    public int load() {
+        VaultService loaded = VaultService.loadFromFile(file, SyntheticVault.PASSWORD);
+        try {
+            return loaded.getEntries().size();
+        } finally {
+            loaded.close();
+        }
+    }
+}
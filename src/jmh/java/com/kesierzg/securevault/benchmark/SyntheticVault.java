@@ -0,0 +1,84 @@
+package com.kesierzg.securevault.benchmark;
+
+import com.kesierzg.securevault.model.PasswordEntry;
+import com.kesierzg.securevault.service.VaultService;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.Stream;
+
+public final class SyntheticVault {
+
+    public static final String PASSWORD = "benchmark-master-password";
+    private static final long SEED = 0x5EC0DE;
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789!@#$%^&*";
+    private static final String[] DOMAINS = {"com", "pl", "org", "net", "io", "dev"};
+
+    private SyntheticVault() {
+    }
+
+    public static List<PasswordEntry> entries(int count) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<PasswordEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String website = word(random, 4, 12) + i + "." + DOMAINS[random.nextInt(DOMAINS.length)];
+            String username = word(random, 5, 10) + "@" + word(random, 4, 8) + ".com";
+            entries.add(new PasswordEntry(website, username, word(random, 12, 24)));
+        }
+        return entries;
+    }
+
+    public static VaultService create(int entryCount, int noteCount) {
+        VaultService vault = new VaultService(PASSWORD);
+        vault.addEntries(entries(entryCount));
+        SplittableRandom random = new SplittableRandom(SEED ^ noteCount);
+        for (int i = 0; i < noteCount; i++) {
+            vault.addNote(word(random, 6, 16) + " " + i, word(random, 40, 400));
+        }
+        return vault;
+    }
+
+    public static Path tempDirectory() throws IOException {
+        return Files.createTempDirectory("securevault-jmh");
+    }
+
+    public static void delete(Path directory) throws IOException {
+        if (directory == null || !Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    public static File vaultFile(Path directory) {
+        return directory.resolve("vault.dat").toFile();
+    }
+
+    public static long sizeOnDisk(File file) throws IOException {
+        long size = Files.size(file.toPath());
+        Path segments = file.toPath().resolveSibling(file.getName() + ".segments");
+        if (Files.isDirectory(segments)) {
+            try (Stream<Path> files = Files.list(segments)) {
+                size += files.mapToLong(path -> path.toFile().length()).sum();
+            }
+        }
+        return size;
+    }
+
+    private static String word(SplittableRandom random, int min, int max) {
+        int length = random.nextInt(min, max + 1);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package com.kesierzg.securevault.benchmark;
+
+import com.kesierzg.securevault.model.PasswordEntry;
+import com.kesierzg.securevault.service.VaultService;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx8g"})
+public class VaultBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private Path directory;
+    private File file;
+    private VaultService vault;
+    private String editedId;
+    private int passwordChanges;
+    private int edits;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        directory = SyntheticVault.tempDirectory();
+        file = SyntheticVault.vaultFile(directory);
+        vault = SyntheticVault.create(size, size / 10);
+        vault.saveToFile(file);
+        editedId = vault.getEntries().get(size / 2).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        vault.close();
+        SyntheticVault.delete(directory);
+    }
+
+    @Benchmark
+    public List<PasswordEntry> getEntries() {
+        return vault.getEntries();
+    }
+
+    @Benchmark
+    public void decryptAll(Blackhole blackhole) {
+        vault.forEachDecrypted(blackhole::consume);
+    }
+
+    @Benchmark
+    public void save() {
+        vault.saveToFile(file);
+    }
+
+    @Benchmark
+    public void editOneAndSave() {
+        vault.editEntryById(editedId, "edited.example.com", "user", "password" + edits++);
+        vault.saveToFile(file);
+    }
+
+    @Benchmark
+    public int load() {
+        VaultService loaded = VaultService.loadFromFile(file, SyntheticVault.PASSWORD);
+        try {
+            return loaded.getEntries().size();
+        } finally {
+            loaded.close();
+        }
+    }
+
+    @Benchmark
+    public void changeMasterPassword() {
+        vault.changeMasterPassword(SyntheticVault.PASSWORD + (passwordChanges++ & 1));
+        vault.flush();
+    }
+}
@@ -1,10 +1,26 @@
 package com.kesierzg.securevault;
 
+import com.kesierzg.securevault.audit.AuditReport;
+import com.kesierzg.securevault.audit.BreachCorpus;
+import com.kesierzg.securevault.audit.PasswordAudit;
+import com.kesierzg.securevault.audit.PasswordFinding;
+import com.kesierzg.securevault.diagnostics.VaultMetrics;
 import com.kesierzg.securevault.model.NoteEntry;
 import com.kesierzg.securevault.model.PasswordEntry;
+import com.kesierzg.securevault.service.ConflictPolicy;
+import com.kesierzg.securevault.service.DecryptedEntryView;
 import com.kesierzg.securevault.service.ExportService;
 import com.kesierzg.securevault.service.ImportService;
+import com.kesierzg.securevault.service.KdfCalibrator;
+import com.kesierzg.securevault.service.MergeResult;
+import com.kesierzg.securevault.service.SecretValue;
+import com.kesierzg.securevault.service.SyncResult;
+import com.kesierzg.securevault.service.VaultFormat;
 import com.kesierzg.securevault.service.VaultService;
+import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
@@ -14,18 +30,41 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 import javafx.stage.FileChooser;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Function;
 
 public class Main extends javafx.application.Application {
 
-    private final File vaultFile = new File(System.getProperty("user.dir"), "vault.json");
+    private final File vaultFile = new File(System.getProperty("user.dir"), "vault.dat");
+    private final File legacyVaultFile = new File(System.getProperty("user.dir"), "vault.json");
     private VaultService vault;
 
     private TableView<PasswordEntry> passwordTable = new TableView<>();
+    private VaultEntryList entryList;
     private TableView<NoteEntry> notesTable = new TableView<>();
     private boolean hideSensitive = true;
+    private static final int SEARCH_LIMIT = 200;
+    private static final Duration UNLOCK_TARGET = Duration.ofMillis(Long.getLong("securevault.unlockMillis", 500));
+    private String passwordQuery = "";
+    private String noteQuery = "";
+    private Path breachCorpus = BreachCorpus.defaultPath();
 
     @Override
     public void start(Stage primaryStage) {
+        primaryStage.setTitle("SecureVault");
+        primaryStage.setOnCloseRequest(e -> {
+            if (vault != null) {
+                vault.close();
+            }
+        });
+        showLogin(primaryStage);
+    }
+
+    private void showLogin(Stage primaryStage) {
         VBox loginBox = new VBox(10);
         loginBox.setPadding(new Insets(20));
 
@@ -34,30 +73,63 @@ public class Main extends javafx.application.Application {
 
         Button loginButton = new Button("Zaloguj");
         Label loginError = new Label();
+        ProgressIndicator loginProgress = new ProgressIndicator();
+        loginProgress.setPrefSize(24, 24);
+        loginProgress.setVisible(false);
 
-        loginBox.getChildren().addAll(new Label("Hasło główne:"), passwordField, loginButton, loginError);
+        loginBox.getChildren().addAll(new Label("Hasło główne:"), passwordField, new HBox(10, loginButton, loginProgress), loginError);
 
-        Scene loginScene = new Scene(loginBox, 300, 150);
+        Scene loginScene = new Scene(loginBox, 300, 170);
         primaryStage.setScene(loginScene);
-        primaryStage.setTitle("SecureVault");
         primaryStage.show();
 
         loginButton.setOnAction(e -> {
             String masterPassword = passwordField.getText();
             if (masterPassword.isEmpty()) return;
 
-            try {
-                if (vaultFile.exists()) {
-                    vault = VaultService.loadFromFile(vaultFile, masterPassword);
-                } else {
-                    vault = new VaultService(masterPassword);
+            Task<VaultService> unlockTask = new Task<>() {
+                @Override
+                protected VaultService call() {
+                    if (vault != null) {
+                        vault.unlock(masterPassword);
+                        return vault;
+                    }
+                    if (vaultFile.exists()) {
+                        VaultService loaded = VaultService.loadFromFile(vaultFile, masterPassword);
+                        if (loaded.getFormat() != VaultFormat.SEGMENTED && loaded.getFormat() != VaultFormat.COMPRESSED) {
+                            loaded.setFormat(VaultFormat.SEGMENTED);
+                            loaded.saveToFile(vaultFile);
+                        }
+                        return loaded;
+                    } else if (legacyVaultFile.exists()) {
+                        return VaultService.migrateFromJson(legacyVaultFile, vaultFile, masterPassword);
+                    }
+                    int iterations = new KdfCalibrator().calibrate(UNLOCK_TARGET);
+                    VaultService created = new VaultService(masterPassword, iterations);
+                    created.saveToFile(vaultFile);
+                    return created;
                 }
-            } catch (RuntimeException ex) {
+            };
+            loginError.setText("");
+            loginProgress.setVisible(true);
+            loginButton.setDisable(true);
+            passwordField.setDisable(true);
+            unlockTask.setOnSucceeded(ev -> {
+                VaultService unlocked = unlockTask.getValue();
+                if (unlocked != vault) {
+                    unlocked.addWriteFailureListener(ex -> Platform.runLater(() -> showAlert("Błąd zapisu",
+                            "Nie udało się zapisać zmian na dysku. Ponowię próbę, ale do tego czasu nowe zmiany są blokowane.")));
+                }
+                vault = unlocked;
+                showMainUI(primaryStage);
+            });
+            unlockTask.setOnFailed(ev -> {
+                loginProgress.setVisible(false);
+                loginButton.setDisable(false);
+                passwordField.setDisable(false);
                 loginError.setText("Niepoprawne hasło lub uszkodzona baza danych");
-                return;
-            }
-
-            showMainUI(primaryStage);
+            });
+            Thread.ofVirtual().start(unlockTask);
         });
     }
 
@@ -72,7 +144,11 @@ public class Main extends javafx.application.Application {
         notesTab.setContent(createNotesTabContent());
         notesTab.setClosable(false);
 
-        tabPane.getTabs().addAll(passwordsTab, notesTab);
+        Tab auditTab = new Tab("Audyt");
+        auditTab.setContent(createAuditTabContent());
+        auditTab.setClosable(false);
+
+        tabPane.getTabs().addAll(passwordsTab, notesTab, auditTab);
 
         Scene scene = new Scene(tabPane, 700, 400);
         primaryStage.setScene(scene);
@@ -82,20 +158,27 @@ public class Main extends javafx.application.Application {
         settingsTab.setContent(createSettingsTabContent());
         settingsTab.setClosable(false);
 
-        tabPane.getTabs().add(settingsTab);
+        Tab diagnosticsTab = new Tab("Diagnostyka");
+        diagnosticsTab.setContent(createDiagnosticsTabContent());
+        diagnosticsTab.setClosable(false);
+
+        tabPane.getTabs().addAll(settingsTab, diagnosticsTab);
     }
 
     private VBox createPasswordsTabContent() {
         TableColumn<PasswordEntry, String> websiteCol = new TableColumn<>("Strona");
         websiteCol.setCellValueFactory(new PropertyValueFactory<>("website"));
 
-        TableColumn<PasswordEntry, String> usernameCol = new TableColumn<>("Użytkownik");
-        usernameCol.setCellValueFactory(new PropertyValueFactory<>("username"));
+        TableColumn<PasswordEntry, PasswordEntry> usernameCol = new TableColumn<>("Użytkownik");
+        usernameCol.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(data.getValue()));
+        usernameCol.setCellFactory(col -> new SecretCell(DecryptedEntryView::getUsernameSecret));
 
-        TableColumn<PasswordEntry, String> passwordCol = new TableColumn<>("Hasło");
-        passwordCol.setCellValueFactory(new PropertyValueFactory<>("password"));
+        TableColumn<PasswordEntry, PasswordEntry> passwordCol = new TableColumn<>("Hasło");
+        passwordCol.setCellValueFactory(data -> new ReadOnlyObjectWrapper<>(data.getValue()));
+        passwordCol.setCellFactory(col -> new SecretCell(DecryptedEntryView::getPasswordSecret));
 
-        passwordTable.getColumns().setAll(websiteCol, usernameCol, passwordCol);
+        passwordTable.getColumns().setAll(List.of(websiteCol, usernameCol, passwordCol));
+        passwordTable.setFixedCellSize(24);
 
         Button addBtn = new Button("Dodaj");
         Button removeBtn = new Button("Usuń");
@@ -105,17 +188,34 @@ public class Main extends javafx.application.Application {
         hideCheck.setSelected(true);
         hideCheck.selectedProperty().addListener((obs, oldV, newV) -> {
             hideSensitive = newV;
-            refreshPasswordTable();
+            passwordTable.refresh();
         });
 
-        HBox buttonsBox = new HBox(10, addBtn, removeBtn, editBtn, hideCheck);
+        Button lockBtn = new Button("Zablokuj");
+        lockBtn.setOnAction(e -> {
+            passwordTable.setItems(FXCollections.observableArrayList());
+            if (entryList != null) {
+                entryList.dispose();
+                entryList = null;
+            }
+            vault.lock();
+            showLogin((Stage) lockBtn.getScene().getWindow());
+        });
+
+        HBox buttonsBox = new HBox(10, addBtn, removeBtn, editBtn, hideCheck, lockBtn);
         buttonsBox.setPadding(new Insets(10));
 
+        TextField searchField = new TextField();
+        searchField.setPromptText("Szukaj (strona, użytkownik)");
+        searchField.textProperty().addListener((obs, oldV, newV) -> {
+            passwordQuery = newV;
+            refreshPasswordTable();
+        });
+
         addBtn.setOnAction(e -> {
             PasswordEntry entry = showPasswordEntryDialog(null);
             if (entry != null) {
                 vault.addEntry(entry.getWebsite(), entry.getUsername(), entry.getPassword());
-                vault.saveToFile(vaultFile);
                 refreshPasswordTable();
             }
         });
@@ -123,8 +223,7 @@ public class Main extends javafx.application.Application {
         removeBtn.setOnAction(e -> {
             PasswordEntry selected = passwordTable.getSelectionModel().getSelectedItem();
             if (selected != null) {
-                vault.removeEntryByWebsite(selected.getWebsite());
-                vault.saveToFile(vaultFile);
+                vault.removeEntryById(selected.getId());
                 refreshPasswordTable();
             }
         });
@@ -132,10 +231,9 @@ public class Main extends javafx.application.Application {
         editBtn.setOnAction(e -> {
             PasswordEntry selected = passwordTable.getSelectionModel().getSelectedItem();
             if (selected != null) {
-                PasswordEntry edited = showPasswordEntryDialog(selected);
+                PasswordEntry edited = showPasswordEntryDialog(vault.getEntryById(selected.getId()));
                 if (edited != null) {
-                    vault.editEntry(selected.getWebsite(), edited.getWebsite(), edited.getUsername(), edited.getPassword());
-                    vault.saveToFile(vaultFile);
+                    vault.editEntryById(selected.getId(), edited.getWebsite(), edited.getUsername(), edited.getPassword());
                     refreshPasswordTable();
                 }
             }
@@ -143,18 +241,52 @@ public class Main extends javafx.application.Application {
 
         refreshPasswordTable();
 
-        VBox vbox = new VBox(passwordTable, buttonsBox);
+        VBox vbox = new VBox(searchField, passwordTable, buttonsBox);
         VBox.setVgrow(passwordTable, Priority.ALWAYS);
         return vbox;
     }
 
     private void refreshPasswordTable() {
-        passwordTable.getItems().clear();
-        for (PasswordEntry e : vault.getEntries()) {
-            if (hideSensitive) {
-                passwordTable.getItems().add(new PasswordEntry(e.getWebsite(), "******", "******"));
+        if (!passwordQuery.isBlank()) {
+            passwordTable.setItems(FXCollections.observableArrayList(vault.searchEntries(passwordQuery, SEARCH_LIMIT)));
+            return;
+        }
+        if (entryList == null) {
+            entryList = new VaultEntryList(vault);
+        }
+        if (passwordTable.getItems() != entryList) {
+            passwordTable.setItems(entryList);
+        }
+    }
+
+    // JavaFX renders only Strings, so a revealed cell holds exactly one copy of its secret;
+    // it is made once per shown SecretValue and dropped as soon as the cell is masked or reused.
+    private class SecretCell extends TableCell<PasswordEntry, PasswordEntry> {
+        private final Function<DecryptedEntryView, SecretValue> secretOf;
+        private SecretValue shown;
+
+        SecretCell(Function<DecryptedEntryView, SecretValue> secretOf) {
+            this.secretOf = secretOf;
+        }
+
+        @Override
+        protected void updateItem(PasswordEntry item, boolean empty) {
+            super.updateItem(item, empty);
+            if (empty || item == null) {
+                shown = null;
+                setText(null);
+            } else if (hideSensitive) {
+                shown = null;
+                setText("******");
+            } else if (item instanceof DecryptedEntryView view) {
+                SecretValue secret = secretOf.apply(view);
+                if (secret != shown || secret.isWiped()) {
+                    shown = secret;
+                    setText(secret.reveal());
+                }
             } else {
-                passwordTable.getItems().add(e);
+                shown = null;
+                setText(null);
             }
         }
     }
@@ -226,7 +358,7 @@ public class Main extends javafx.application.Application {
         TableColumn<NoteEntry, String> noteContentCol = new TableColumn<>("Treść");
         noteContentCol.setCellValueFactory(new PropertyValueFactory<>("content"));
 
-        notesTable.getColumns().setAll(noteTitleCol, noteContentCol);
+        notesTable.getColumns().setAll(List.of(noteTitleCol, noteContentCol));
 
         Button addNoteBtn = new Button("Dodaj");
         Button removeNoteBtn = new Button("Usuń");
@@ -241,11 +373,17 @@ public class Main extends javafx.application.Application {
         HBox notesButtonsBox = new HBox(10, addNoteBtn, removeNoteBtn, editNoteBtn, hideCheck);
         notesButtonsBox.setPadding(new Insets(10));
 
+        TextField searchField = new TextField();
+        searchField.setPromptText("Szukaj (nazwa)");
+        searchField.textProperty().addListener((obs, oldV, newV) -> {
+            noteQuery = newV;
+            refreshNotesTable(hideCheck.isSelected());
+        });
+
         addNoteBtn.setOnAction(e -> {
             NoteEntry note = showNoteEntryDialog(null);
             if (note != null) {
                 vault.addNote(note.getTitle(), note.getContent());
-                vault.saveToFile(vaultFile);
                 refreshNotesTable(hideCheck.isSelected());
             }
         });
@@ -253,8 +391,7 @@ public class Main extends javafx.application.Application {
         removeNoteBtn.setOnAction(e -> {
             NoteEntry selected = notesTable.getSelectionModel().getSelectedItem();
             if (selected != null) {
-                vault.removeNoteByTitle(selected.getTitle());
-                vault.saveToFile(vaultFile);
+                vault.removeNoteById(selected.getId());
                 refreshNotesTable(hideCheck.isSelected());
             }
         });
@@ -262,25 +399,27 @@ public class Main extends javafx.application.Application {
         editNoteBtn.setOnAction(e -> {
             NoteEntry selected = notesTable.getSelectionModel().getSelectedItem();
             if (selected != null) {
-                NoteEntry edited = showNoteEntryDialog(selected);
+                NoteEntry edited = showNoteEntryDialog(vault.getNoteById(selected.getId()));
                 if (edited != null) {
-                    vault.editNote(selected.getTitle(), edited.getTitle(), edited.getContent());
-                    vault.saveToFile(vaultFile);
+                    vault.editNoteById(selected.getId(), edited.getTitle(), edited.getContent());
                     refreshNotesTable(hideCheck.isSelected());
                 }
             }
         });
 
-        VBox vbox = new VBox(notesTable, notesButtonsBox);
+        VBox vbox = new VBox(searchField, notesTable, notesButtonsBox);
         VBox.setVgrow(notesTable, Priority.ALWAYS);
         return vbox;
     }
 
     private void refreshNotesTable(boolean hide) {
         notesTable.getItems().clear();
-        for (NoteEntry e : vault.getNotes()) {
+        List<NoteEntry> found = noteQuery.isBlank()
+                ? vault.getNotes()
+                : vault.searchNotes(noteQuery, SEARCH_LIMIT);
+        for (NoteEntry e : found) {
             if (hide) {
-                notesTable.getItems().add(new NoteEntry(e.getTitle(), "******"));
+                notesTable.getItems().add(new NoteEntry(e.getId(), e.getTitle(), "******"));
             } else {
                 notesTable.getItems().add(e);
             }
@@ -349,6 +488,14 @@ public class Main extends javafx.application.Application {
         Button importBtn = new Button("Importuj z Bitwardena (CSV)");
         Button exportBtn = new Button("Eksportuj do Bitwardena (CSV)");
 
+        ProgressBar importProgress = new ProgressBar(0);
+        importProgress.setMaxWidth(Double.MAX_VALUE);
+        importProgress.setVisible(false);
+
+        ComboBox<ConflictPolicy> conflictChoice = new ComboBox<>(FXCollections.observableArrayList(ConflictPolicy.values()));
+        conflictChoice.setValue(ConflictPolicy.KEEP_EXISTING);
+        Label importSummary = new Label();
+
         ImportService importService = new ImportService();
         ExportService exportService = new ExportService();
 
@@ -358,16 +505,30 @@ public class Main extends javafx.application.Application {
             chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("CSV Files", "*.csv"));
             File file = chooser.showOpenDialog(null);
             if (file != null) {
-                try {
-                    java.util.List<PasswordEntry> importedEntries = importService.importFromBitwarden(file);
-                    for (PasswordEntry entry : importedEntries) {
-                        vault.addEntry(entry.getWebsite(), entry.getUsername(), entry.getPassword());
+                ConflictPolicy policy = conflictChoice.getValue();
+                Task<MergeResult> importTask = new Task<>() {
+                    @Override
+                    protected MergeResult call() throws Exception {
+                        return vault.mergeEntries(sink -> importService.importFromBitwarden(file, sink), policy, this::updateProgress);
                     }
-                    vault.saveToFile(vaultFile);
+                };
+                importProgress.progressProperty().bind(importTask.progressProperty());
+                importProgress.setVisible(true);
+                importBtn.setDisable(true);
+                importTask.setOnSucceeded(ev -> {
+                    MergeResult result = importTask.getValue();
+                    importProgress.setVisible(false);
+                    importBtn.setDisable(false);
+                    importSummary.setText(String.format("Dodano %d, pominięto identyczne %d, konflikty %d (nadpisano %d)",
+                            result.getAdded(), result.getIdentical(), result.getConflicts(), result.getOverwritten()));
                     refreshPasswordTable();
-                } catch (Exception ex) {
+                });
+                importTask.setOnFailed(ev -> {
+                    importProgress.setVisible(false);
+                    importBtn.setDisable(false);
                     showAlert("Błąd importu", "Nie udało się zaimportować pliku CSV.");
-                }
+                });
+                Thread.ofVirtual().start(importTask);
             }
         });
 
@@ -378,14 +539,169 @@ public class Main extends javafx.application.Application {
             File file = chooser.showSaveDialog(null);
             if (file != null) {
                 try {
-                    exportService.exportToBitwarden(vault.getEntries(), file);
+                    exportService.exportToBitwarden(vault, file, true);
                 } catch (Exception ex) {
                     showAlert("Błąd eksportu", "Nie udało się wyeksportować pliku CSV.");
                 }
             }
         });
 
-        VBox vbox = new VBox(15, importBtn, exportBtn);
+        Button syncBtn = new Button("Synchronizuj z plikiem");
+        Label syncSummary = new Label();
+        syncBtn.setOnAction(e -> {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Wybierz drugą kopię bazy");
+            File file = chooser.showOpenDialog(null);
+            if (file != null) {
+                Task<SyncResult> syncTask = new Task<>() {
+                    @Override
+                    protected SyncResult call() {
+                        return vault.syncWith(file);
+                    }
+                };
+                syncBtn.setDisable(true);
+                syncTask.setOnSucceeded(ev -> {
+                    SyncResult result = syncTask.getValue();
+                    syncBtn.setDisable(false);
+                    syncSummary.setText(String.format("Pobrano %d, wysłano %d, konflikty %d (porównane segmenty: %d)",
+                            result.getPulled(), result.getPushed(), result.getConflicts(), result.getSegmentsCompared()));
+                    refreshPasswordTable();
+                });
+                syncTask.setOnFailed(ev -> {
+                    syncBtn.setDisable(false);
+                    showAlert("Błąd synchronizacji", "Nie udało się zsynchronizować z wybranym plikiem.");
+                });
+                Thread.ofVirtual().start(syncTask);
+            }
+        });
+
+        CheckBox compressCheck = new CheckBox("Kompresuj plik bazy (wyłącza synchronizację)");
+        compressCheck.setSelected(vault.getFormat() == VaultFormat.COMPRESSED);
+        compressCheck.selectedProperty().addListener((obs, oldV, newV) -> {
+            vault.setFormat(newV ? VaultFormat.COMPRESSED : VaultFormat.SEGMENTED);
+            try {
+                vault.saveToFile(vaultFile);
+            } catch (Exception ex) {
+                showAlert("Błąd zapisu", "Nie udało się zapisać bazy w nowym formacie.");
+            }
+            syncBtn.setDisable(newV);
+        });
+        syncBtn.setDisable(compressCheck.isSelected());
+
+        HBox importBox = new HBox(10, importBtn, new Label("Przy konflikcie:"), conflictChoice);
+        VBox vbox = new VBox(15, importBox, exportBtn, importProgress, importSummary, syncBtn, syncSummary, compressCheck);
+        vbox.setPadding(new Insets(20));
+        return vbox;
+    }
+
+    private VBox createAuditTabContent() {
+        TableView<PasswordFinding> findingsTable = new TableView<>();
+        TableColumn<PasswordFinding, String> websiteCol = new TableColumn<>("Strona");
+        websiteCol.setCellValueFactory(new PropertyValueFactory<>("website"));
+        TableColumn<PasswordFinding, String> strengthCol = new TableColumn<>("Siła");
+        strengthCol.setCellValueFactory(new PropertyValueFactory<>("strengthLabel"));
+        TableColumn<PasswordFinding, Integer> reuseCol = new TableColumn<>("Powtórzenia");
+        reuseCol.setCellValueFactory(new PropertyValueFactory<>("reuseCount"));
+        TableColumn<PasswordFinding, Integer> breachCol = new TableColumn<>("Wycieki");
+        breachCol.setCellValueFactory(new PropertyValueFactory<>("breachCount"));
+        findingsTable.getColumns().setAll(List.of(websiteCol, strengthCol, reuseCol, breachCol));
+        findingsTable.setFixedCellSize(24);
+        VBox.setVgrow(findingsTable, Priority.ALWAYS);
+
+        Label corpusLabel = new Label(corpusDescription());
+        Label summaryLabel = new Label();
+        Button corpusBtn = new Button("Wybierz bazę wycieków");
+        Button runBtn = new Button("Uruchom audyt");
+        ProgressBar auditProgress = new ProgressBar(0);
+        auditProgress.setMaxWidth(Double.MAX_VALUE);
+        auditProgress.setVisible(false);
+
+        corpusBtn.setOnAction(e -> {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Wybierz posortowaną bazę skrótów SHA-1 (format HIBP)");
+            chooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Pliki tekstowe", "*.txt"));
+            File file = chooser.showOpenDialog(null);
+            if (file != null) {
+                breachCorpus = file.toPath();
+                corpusLabel.setText(corpusDescription());
+            }
+        });
+
+        runBtn.setOnAction(e -> {
+            Path corpusPath = breachCorpus;
+            Task<AuditReport> auditTask = new Task<>() {
+                @Override
+                protected AuditReport call() throws Exception {
+                    if (corpusPath == null) {
+                        return new PasswordAudit(vault, null).run(this::updateProgress);
+                    }
+                    try (BreachCorpus corpus = BreachCorpus.open(corpusPath)) {
+                        return new PasswordAudit(vault, corpus).run(this::updateProgress);
+                    }
+                }
+            };
+            auditProgress.progressProperty().bind(auditTask.progressProperty());
+            auditProgress.setVisible(true);
+            runBtn.setDisable(true);
+            auditTask.setOnSucceeded(ev -> {
+                AuditReport report = auditTask.getValue();
+                auditProgress.setVisible(false);
+                runBtn.setDisable(false);
+                findingsTable.setItems(FXCollections.observableArrayList(report.getFindings()));
+                summaryLabel.setText(String.format("Sprawdzono %d haseł w %d ms: słabe %d, powtórzone %d (%d grup), w wyciekach %s",
+                        report.getChecked(), report.getElapsed().toMillis(), report.getWeakCount(),
+                        report.getReusedCount(), report.getReuseGroups(),
+                        report.isBreachesChecked() ? String.valueOf(report.getBreachedCount()) : "nie sprawdzano"));
+            });
+            auditTask.setOnFailed(ev -> {
+                auditProgress.setVisible(false);
+                runBtn.setDisable(false);
+                showAlert("Błąd audytu", "Nie udało się przeprowadzić audytu haseł.");
+            });
+            Thread.ofVirtual().start(auditTask);
+        });
+
+        VBox vbox = new VBox(10, new HBox(10, runBtn, corpusBtn), corpusLabel, auditProgress, summaryLabel, findingsTable);
+        vbox.setPadding(new Insets(20));
+        return vbox;
+    }
+
+    private String corpusDescription() {
+        return breachCorpus != null
+                ? "Baza wycieków: " + breachCorpus
+                : "Baza wycieków: brak (sprawdzana jest tylko siła i powtórzenia haseł)";
+    }
+
+    private VBox createDiagnosticsTabContent() {
+        TextArea metricsArea = new TextArea(VaultMetrics.dump());
+        metricsArea.setEditable(false);
+        metricsArea.setStyle("-fx-font-family: monospace;");
+        VBox.setVgrow(metricsArea, Priority.ALWAYS);
+
+        Button refreshBtn = new Button("Odśwież");
+        Button resetBtn = new Button("Wyzeruj");
+        Button dumpBtn = new Button("Zapisz do pliku");
+
+        refreshBtn.setOnAction(e -> metricsArea.setText(VaultMetrics.dump()));
+        resetBtn.setOnAction(e -> {
+            VaultMetrics.reset();
+            metricsArea.setText(VaultMetrics.dump());
+        });
+        dumpBtn.setOnAction(e -> {
+            FileChooser chooser = new FileChooser();
+            chooser.setTitle("Wybierz miejsce do zapisania metryk");
+            chooser.setInitialFileName("securevault-metrics.txt");
+            File file = chooser.showSaveDialog(null);
+            if (file != null) {
+                try {
+                    Files.writeString(file.toPath(), VaultMetrics.dump());
+                } catch (IOException ex) {
+                    showAlert("Błąd zapisu", "Nie udało się zapisać metryk.");
+                }
+            }
+        });
+
+        VBox vbox = new VBox(10, new HBox(10, refreshBtn, resetBtn, dumpBtn), metricsArea);
         vbox.setPadding(new Insets(20));
         return vbox;
     }
@@ -0,0 +1,125 @@
+package com.kesierzg.securevault;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class OrderedIds {
+
+    private static final int MIN_COMPACT = 1024;
+
+    private final List<String> slots = new ArrayList<>();
+    private final Map<String, Integer> slotById = new HashMap<>();
+    private int[] tree = new int[1];
+    private int size;
+
+    OrderedIds(Collection<String> ids) {
+        ids.forEach(this::add);
+    }
+
+    int size() {
+        return size;
+    }
+
+    String get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int slot = 0;
+        int remaining = index + 1;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+            int next = slot + step;
+            if (next < tree.length && tree[next] < remaining) {
+                slot = next;
+                remaining -= tree[next];
+            }
+        }
+        return slots.get(slot);
+    }
+
+    int indexOf(String id) {
+        Integer slot = slotById.get(id);
+        if (slot == null) {
+            return -1;
+        }
+        int index = 0;
+        for (int i = slot; i > 0; i -= i & -i) {
+            index += tree[i];
+        }
+        return index;
+    }
+
+    boolean add(String id) {
+        if (slotById.containsKey(id)) {
+            return false;
+        }
+        int slot = slots.size();
+        slots.add(id);
+        slotById.put(id, slot);
+        if (slots.size() >= tree.length) {
+            rebuild(Math.max(16, tree.length * 2));
+        } else {
+            update(slot, 1);
+        }
+        size++;
+        return true;
+    }
+
+    boolean remove(String id) {
+        Integer slot = slotById.remove(id);
+        if (slot == null) {
+            return false;
+        }
+        slots.set(slot, null);
+        update(slot, -1);
+        size--;
+        int holes = slots.size() - size;
+        if (holes > MIN_COMPACT && holes > size) {
+            slots.removeIf(s -> s == null);
+            slotById.clear();
+            for (int i = 0; i < slots.size(); i++) {
+                slotById.put(slots.get(i), i);
+            }
+            rebuild(tree.length - 1);
+        }
+        return true;
+    }
+
+    List<String> toList() {
+        List<String> ids = new ArrayList<>(size);
+        for (String id : slots) {
+            if (id != null) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    void clear() {
+        slots.clear();
+        slotById.clear();
+        tree = new int[1];
+        size = 0;
+    }
+
+    private void update(int slot, int delta) {
+        for (int i = slot + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+    }
+
+    private void rebuild(int capacity) {
+        tree = new int[capacity + 1];
+        for (int i = 1; i < tree.length; i++) {
+            if (i <= slots.size() && slots.get(i - 1) != null) {
+                tree[i]++;
+            }
+            int parent = i + (i & -i);
+            if (parent < tree.length) {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+}
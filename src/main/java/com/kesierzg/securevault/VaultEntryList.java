@@ -0,0 +1,114 @@
+package com.kesierzg.securevault;
+
+import com.kesierzg.securevault.model.PasswordEntry;
+import com.kesierzg.securevault.service.VaultChange;
+import com.kesierzg.securevault.service.VaultListener;
+import com.kesierzg.securevault.service.VaultService;
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+
+import java.util.AbstractList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+class VaultEntryList extends ObservableListBase<PasswordEntry> implements VaultListener {
+
+    private static final int ROW_CACHE_SIZE = 512;
+
+    private final VaultService vault;
+    private final OrderedIds ids;
+    private final Map<String, PasswordEntry> rows = new LinkedHashMap<>(ROW_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PasswordEntry> eldest) {
+            return size() > ROW_CACHE_SIZE;
+        }
+    };
+
+    VaultEntryList(VaultService vault) {
+        this.vault = vault;
+        this.ids = new OrderedIds(vault.subscribe(this));
+    }
+
+    void dispose() {
+        vault.removeListener(this);
+    }
+
+    @Override
+    public PasswordEntry get(int index) {
+        String id = ids.get(index);
+        PasswordEntry row = rows.get(id);
+        if (row == null) {
+            row = vault.getEntryById(id);
+            if (row == null) {
+                row = new PasswordEntry(id, "", null, null);
+            }
+            rows.put(id, row);
+        }
+        return row;
+    }
+
+    @Override
+    public int size() {
+        return ids.size();
+    }
+
+    @Override
+    public void vaultChanged(VaultChange change) {
+        if (Platform.isFxApplicationThread()) {
+            apply(change);
+        } else {
+            Platform.runLater(() -> apply(change));
+        }
+    }
+
+    void apply(VaultChange change) {
+        beginChange();
+        try {
+            if (change.isEntriesCleared() && ids.size() > 0) {
+                List<String> removed = ids.toList();
+                ids.clear();
+                rows.clear();
+                nextRemove(0, stubs(removed));
+            }
+            for (String id : change.getRemovedEntries()) {
+                int index = ids.indexOf(id);
+                if (index >= 0) {
+                    PasswordEntry old = get(index);
+                    ids.remove(id);
+                    rows.remove(id);
+                    nextRemove(index, old);
+                }
+            }
+            for (String id : change.getUpdatedEntries()) {
+                int index = ids.indexOf(id);
+                if (index >= 0) {
+                    PasswordEntry old = get(index);
+                    rows.remove(id);
+                    nextSet(index, old);
+                }
+            }
+            int from = ids.size();
+            change.getAddedEntries().forEach(ids::add);
+            if (ids.size() > from) {
+                nextAdd(from, ids.size());
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+    private static List<PasswordEntry> stubs(List<String> ids) {
+        return new AbstractList<>() {
+            @Override
+            public PasswordEntry get(int index) {
+                return new PasswordEntry(ids.get(index), "", null, null);
+            }
+
+            @Override
+            public int size() {
+                return ids.size();
+            }
+        };
+    }
+}
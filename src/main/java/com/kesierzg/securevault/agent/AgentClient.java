@@ -0,0 +1,67 @@
+package com.kesierzg.securevault.agent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class AgentClient implements Closeable {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SocketChannel channel;
+    private final BufferedReader in;
+    private final OutputStream out;
+
+    private AgentClient(SocketChannel channel) {
+        this.channel = channel;
+        this.in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+        this.out = Channels.newOutputStream(channel);
+    }
+
+    public static AgentClient connect(Path socket) throws IOException {
+        if (!Files.exists(socket)) {
+            return null;
+        }
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+        } catch (IOException e) {
+            channel.close();
+            return null;
+        }
+        return new AgentClient(channel);
+    }
+
+    public ObjectNode request(String op) {
+        ObjectNode request = objectMapper.createObjectNode();
+        request.put("op", op);
+        return request;
+    }
+
+    public JsonNode send(ObjectNode request) throws IOException {
+        out.write(objectMapper.writeValueAsBytes(request));
+        out.write('\n');
+        out.flush();
+        String line = in.readLine();
+        if (line == null) {
+            throw new IOException("agent zamknal polaczenie");
+        }
+        return objectMapper.readTree(line);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
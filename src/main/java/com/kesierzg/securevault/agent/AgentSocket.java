@@ -0,0 +1,40 @@
+package com.kesierzg.securevault.agent;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+public final class AgentSocket {
+
+    public static final String SOCKET_ENV = "SECUREVAULT_AGENT_SOCK";
+
+    private AgentSocket() {
+    }
+
+    public static Path defaultPath() {
+        String configured = System.getenv(SOCKET_ENV);
+        if (configured != null && !configured.isBlank()) {
+            return Path.of(configured);
+        }
+        String runtimeDir = System.getenv("XDG_RUNTIME_DIR");
+        Path base = runtimeDir != null ? Path.of(runtimeDir) : Path.of(System.getProperty("java.io.tmpdir"));
+        return base.resolve("securevault-" + System.getProperty("user.name")).resolve("agent.sock");
+    }
+
+    static void prepareDirectory(Path socket) throws IOException {
+        Path directory = socket.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.setPosixFilePermissions(directory, PosixFilePermissions.fromString("rwx------"));
+        }
+        Files.deleteIfExists(socket);
+    }
+
+    static void restrict(Path socket) throws IOException {
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.setPosixFilePermissions(socket, PosixFilePermissions.fromString("rw-------"));
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.kesierzg.securevault.agent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.kesierzg.securevault.model.PasswordEntry;
+import com.kesierzg.securevault.service.VaultService;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class VaultAgent implements Closeable {
+
+    private static final int DEFAULT_LIMIT = 50;
+
+    private final File vaultFile;
+    private final String vaultPath;
+    private volatile VaultService vault;
+    private volatile long[] loadedStamp;
+    private volatile boolean reloadOnUnlock;
+    private final Path socket;
+    private final Duration idleTimeout;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final AtomicLong lastActivity = new AtomicLong(System.nanoTime());
+    private final ScheduledExecutorService idleTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "vault-agent-idle");
+        t.setDaemon(true);
+        return t;
+    });
+    private ServerSocketChannel server;
+
+    public VaultAgent(File vaultFile, Path socket, Duration idleTimeout, String masterPassword) throws IOException {
+        this.vaultFile = vaultFile;
+        this.vaultPath = vaultFile.getCanonicalPath();
+        this.loadedStamp = stamp();
+        this.vault = VaultService.loadReadOnly(vaultFile, masterPassword);
+        this.socket = socket;
+        this.idleTimeout = idleTimeout;
+    }
+
+    public void serve() throws IOException {
+        AgentSocket.prepareDirectory(socket);
+        server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        server.bind(UnixDomainSocketAddress.of(socket));
+        AgentSocket.restrict(socket);
+        warmUp();
+        long checkMillis = Math.max(1000, idleTimeout.toMillis() / 10);
+        idleTimer.scheduleWithFixedDelay(this::lockIfIdle, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+        try {
+            while (server.isOpen()) {
+                SocketChannel client;
+                try {
+                    client = server.accept();
+                } catch (ClosedChannelException e) {
+                    break;
+                }
+                Thread.ofVirtual().name("vault-agent-client").start(() -> handle(client));
+            }
+        } finally {
+            close();
+        }
+    }
+
+    private void handle(SocketChannel client) {
+        try (client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+             OutputStream out = Channels.newOutputStream(client)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                ObjectNode response;
+                try {
+                    response = dispatch(objectMapper.readTree(line));
+                } catch (Exception e) {
+                    response = error(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+                }
+                out.write(objectMapper.writeValueAsBytes(response));
+                out.write('\n');
+                out.flush();
+            }
+        } catch (IOException e) {
+            System.err.println("agent: polaczenie zerwane: " + e.getMessage());
+        }
+    }
+
+    private ObjectNode dispatch(JsonNode request) throws IOException {
+        String op = request.path("op").asText();
+        if (!vaultPath.equals(request.path("vault").asText(vaultPath))) {
+            return error("agent obsluguje inna baze");
+        }
+        switch (op) {
+            case "status":
+                return status();
+            case "lock":
+                lockVault();
+                return ok();
+            case "unlock":
+                return unlock(request.path("password").asText(null));
+            case "stop":
+                server.close();
+                return ok();
+            default:
+                break;
+        }
+        lockIfChanged();
+        lock.readLock().lock();
+        try {
+            if (vault.isLocked()) {
+                return error("locked");
+            }
+            lastActivity.set(System.nanoTime());
+            return switch (op) {
+                case "get" -> get(request.path("website").asText());
+                case "search" -> entries(vault.searchEntries(request.path("query").asText(), request.path("limit").asInt(DEFAULT_LIMIT)));
+                case "list" -> entries(vault.getEntries());
+                default -> error("nieznana operacja: " + op);
+            };
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private ObjectNode get(String website) {
+        PasswordEntry entry = vault.getEntry(website);
+        if (entry == null) {
+            List<PasswordEntry> found = vault.findEntries(website);
+            entry = found.isEmpty() ? null : found.get(0);
+        }
+        if (entry == null) {
+            return error("nie znaleziono: " + website);
+        }
+        ObjectNode response = ok();
+        writeEntry(response.putObject("entry"), entry, true);
+        return response;
+    }
+
+    private ObjectNode entries(List<PasswordEntry> entries) {
+        ObjectNode response = ok();
+        ArrayNode array = response.putArray("entries");
+        for (PasswordEntry entry : entries) {
+            writeEntry(array.addObject(), entry, false);
+        }
+        return response;
+    }
+
+    private ObjectNode unlock(String password) {
+        if (password == null) {
+            return error("brak hasla");
+        }
+        lock.writeLock().lock();
+        try {
+            if (reloadOnUnlock) {
+                long[] stamp = stamp();
+                VaultService reloaded = VaultService.loadReadOnly(vaultFile, password);
+                vault.close();
+                vault = reloaded;
+                loadedStamp = stamp;
+                reloadOnUnlock = false;
+            } else {
+                vault.unlock(password);
+            }
+            warmUp();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return ok();
+    }
+
+    private ObjectNode status() {
+        ObjectNode response = ok();
+        response.put("locked", vault.isLocked());
+        response.put("stale", isStale());
+        response.put("idleTimeoutSeconds", idleTimeout.toSeconds());
+        return response;
+    }
+
+    private void warmUp() {
+        lock.writeLock().lock();
+        try {
+            if (!vault.isLocked()) {
+                vault.searchEntries("", 0);
+            }
+            lastActivity.set(System.nanoTime());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void lockIfIdle() {
+        if (System.nanoTime() - lastActivity.get() >= idleTimeout.toNanos() && !vault.isLocked()) {
+            lockVault();
+            System.err.println("agent: sejf zablokowany po bezczynnosci");
+        }
+    }
+
+    private boolean isStale() {
+        return reloadOnUnlock || !Arrays.equals(loadedStamp, stamp());
+    }
+
+    private void lockIfChanged() {
+        if (reloadOnUnlock || Arrays.equals(loadedStamp, stamp())) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!reloadOnUnlock && !Arrays.equals(loadedStamp, stamp())) {
+                vault.lock();
+                reloadOnUnlock = true;
+                System.err.println("agent: baza zmienila sie na dysku, wczytam ja ponownie po odblokowaniu");
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private long[] stamp() {
+        File journal = VaultService.journalPath(vaultFile).toFile();
+        return new long[] {vaultFile.lastModified(), vaultFile.length(), journal.lastModified(), journal.length()};
+    }
+
+    private void lockVault() {
+        lock.writeLock().lock();
+        try {
+            vault.lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void writeEntry(ObjectNode node, PasswordEntry entry, boolean withPassword) {
+        node.put("id", entry.getId());
+        node.put("website", entry.getWebsite());
+        node.put("username", entry.getUsername());
+        if (withPassword) {
+            node.put("password", entry.getPassword());
+        }
+    }
+
+    private ObjectNode ok() {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("ok", true);
+        node.put("vault", vaultPath);
+        return node;
+    }
+
+    private ObjectNode error(String message) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("ok", false);
+        node.put("error", message);
+        node.put("vault", vaultPath);
+        return node;
+    }
+
+    @Override
+    public void close() throws IOException {
+        idleTimer.shutdownNow();
+        if (server != null) {
+            server.close();
+        }
+        Files.deleteIfExists(socket);
+        lockVault();
+        vault.close();
+    }
+}
@@ -0,0 +1,53 @@
+package com.kesierzg.securevault.audit;
+
+import java.time.Duration;
+import java.util.List;
+
+public class AuditReport {
+
+    private final List<PasswordFinding> findings;
+    private final int checked;
+    private final int reuseGroups;
+    private final boolean breachesChecked;
+    private final Duration elapsed;
+
+    AuditReport(List<PasswordFinding> findings, int checked, int reuseGroups, boolean breachesChecked, Duration elapsed) {
+        this.findings = findings;
+        this.checked = checked;
+        this.reuseGroups = reuseGroups;
+        this.breachesChecked = breachesChecked;
+        this.elapsed = elapsed;
+    }
+
+    public List<PasswordFinding> getFindings() {
+        return findings;
+    }
+
+    public int getChecked() {
+        return checked;
+    }
+
+    public int getReuseGroups() {
+        return reuseGroups;
+    }
+
+    public long getWeakCount() {
+        return findings.stream().filter(PasswordFinding::isWeak).count();
+    }
+
+    public long getReusedCount() {
+        return findings.stream().filter(PasswordFinding::isReused).count();
+    }
+
+    public long getBreachedCount() {
+        return findings.stream().filter(PasswordFinding::isBreached).count();
+    }
+
+    public boolean isBreachesChecked() {
+        return breachesChecked;
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+}
@@ -0,0 +1,132 @@
+package com.kesierzg.securevault.audit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class BreachCorpus implements Closeable {
+
+    private static final int HASH_LENGTH = 40;
+    private static final long CHUNK_SIZE = 1L << 30;
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] chunks;
+    private final long size;
+
+    private BreachCorpus(FileChannel channel, MappedByteBuffer[] chunks, long size) {
+        this.channel = channel;
+        this.chunks = chunks;
+        this.size = size;
+    }
+
+    public static Path defaultPath() {
+        String configured = System.getProperty("securevault.breachCorpus", System.getenv("SECUREVAULT_BREACH_CORPUS"));
+        if (configured != null && !configured.isBlank()) {
+            return Path.of(configured);
+        }
+        Path path = Path.of(System.getProperty("user.home"), ".securevault", "pwned-passwords-sha1-ordered-by-hash.txt");
+        return Files.isRegularFile(path) ? path : null;
+    }
+
+    public static BreachCorpus open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int) ((size + CHUNK_SIZE - 1) / CHUNK_SIZE)];
+            for (int i = 0; i < chunks.length; i++) {
+                long offset = i * CHUNK_SIZE;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(CHUNK_SIZE, size - offset));
+            }
+            return new BreachCorpus(channel, chunks, size);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int count(byte[] sha1) {
+        byte[] target = new byte[HASH_LENGTH];
+        for (int i = 0; i < sha1.length; i++) {
+            target[i * 2] = (byte) HEX[(sha1[i] >> 4) & 0xF];
+            target[i * 2 + 1] = (byte) HEX[sha1[i] & 0xF];
+        }
+        long lo = 0;
+        long hi = size;
+        while (lo < hi) {
+            long start = lineStart((lo + hi) >>> 1, lo);
+            int cmp = compare(start, target);
+            if (cmp == 0) {
+                return parseCount(start + HASH_LENGTH);
+            }
+            if (cmp < 0) {
+                lo = nextLine(start);
+            } else {
+                hi = start;
+            }
+        }
+        return 0;
+    }
+
+    private byte at(long position) {
+        return chunks[(int) (position / CHUNK_SIZE)].get((int) (position % CHUNK_SIZE));
+    }
+
+    private long lineStart(long position, long floor) {
+        while (position > floor && at(position - 1) != '\n') {
+            position--;
+        }
+        return position;
+    }
+
+    private long nextLine(long position) {
+        while (position < size && at(position) != '\n') {
+            position++;
+        }
+        return position + 1;
+    }
+
+    private int compare(long start, byte[] target) {
+        if (start + HASH_LENGTH > size) {
+            return -1;
+        }
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            int b = at(start + i);
+            if (b >= 'a' && b <= 'f') {
+                b -= 'a' - 'A';
+            }
+            if (b != target[i]) {
+                return b - target[i];
+            }
+        }
+        return 0;
+    }
+
+    private int parseCount(long position) {
+        if (position >= size || at(position) != ':') {
+            return 1;
+        }
+        long count = 0;
+        for (long p = position + 1; p < size; p++) {
+            byte b = at(p);
+            if (b < '0' || b > '9') {
+                break;
+            }
+            count = count * 10 + (b - '0');
+        }
+        return (int) Math.min(Math.max(count, 1), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
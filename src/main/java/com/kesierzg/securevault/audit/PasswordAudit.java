@@ -0,0 +1,91 @@
+package com.kesierzg.securevault.audit;
+
+import com.kesierzg.securevault.diagnostics.Operation;
+import com.kesierzg.securevault.diagnostics.VaultMetrics;
+import com.kesierzg.securevault.service.ProgressListener;
+import com.kesierzg.securevault.service.VaultService;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+public class PasswordAudit {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final VaultService vault;
+    private final BreachCorpus corpus;
+
+    private record Sample(String id, String website, String digest, int strength) {
+    }
+
+    public PasswordAudit(VaultService vault, BreachCorpus corpus) {
+        this.vault = vault;
+        this.corpus = corpus;
+    }
+
+    public AuditReport run() {
+        return run(ProgressListener.NONE);
+    }
+
+    public AuditReport run(ProgressListener progress) {
+        long start = System.nanoTime();
+        try (VaultMetrics.Timer timer = VaultMetrics.start(Operation.AUDIT)) {
+            List<Sample> samples = vault.mapDecrypted(entry -> new Sample(entry.getId(), entry.getWebsite(),
+                    sha1(entry.getPassword()), PasswordStrength.score(entry.getPassword())));
+            timer.items(samples.size());
+            Map<String, Integer> reuse = samples.parallelStream()
+                    .collect(Collectors.groupingByConcurrent(Sample::digest, Collectors.summingInt(sample -> 1)));
+            Map<String, Integer> breaches = corpus != null ? lookupBreaches(reuse.keySet(), progress) : Map.of();
+            List<PasswordFinding> findings = samples.parallelStream()
+                    .map(sample -> new PasswordFinding(sample.id(), sample.website(), sample.strength(),
+                            reuse.get(sample.digest()), breaches.getOrDefault(sample.digest(), 0)))
+                    .filter(PasswordFinding::hasIssues)
+                    .sorted(Comparator.comparingInt(PasswordFinding::getBreachCount).reversed()
+                            .thenComparing(Comparator.comparingInt(PasswordFinding::getReuseCount).reversed())
+                            .thenComparingInt(PasswordFinding::getStrength)
+                            .thenComparing(PasswordFinding::getWebsite, String.CASE_INSENSITIVE_ORDER))
+                    .toList();
+            int reuseGroups = (int) reuse.values().stream().filter(count -> count > 1).count();
+            return new AuditReport(findings, samples.size(), reuseGroups, corpus != null,
+                    Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    private Map<String, Integer> lookupBreaches(Iterable<String> digests, ProgressListener progress) {
+        List<String> sorted = new ArrayList<>();
+        digests.forEach(sorted::add);
+        sorted.sort(null);
+        long total = sorted.size();
+        AtomicLong done = new AtomicLong();
+        Map<String, Integer> found = new ConcurrentHashMap<>();
+        try (VaultMetrics.Timer timer = VaultMetrics.start(Operation.AUDIT_BREACH_LOOKUP)) {
+            timer.items(total);
+            sorted.parallelStream().forEach(digest -> {
+                int count = corpus.count(HEX.parseHex(digest));
+                if (count > 0) {
+                    found.put(digest, count);
+                }
+                progress.onProgress(done.incrementAndGet(), total);
+            });
+        }
+        return found;
+    }
+
+    private static String sha1(String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            return HEX.formatHex(digest.digest(password.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("brak SHA-1", e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.kesierzg.securevault.audit;
+
+public class PasswordFinding {
+
+    private final String id;
+    private final String website;
+    private final int strength;
+    private final int reuseCount;
+    private final int breachCount;
+
+    public PasswordFinding(String id, String website, int strength, int reuseCount, int breachCount) {
+        this.id = id;
+        this.website = website;
+        this.strength = strength;
+        this.reuseCount = reuseCount;
+        this.breachCount = breachCount;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getWebsite() {
+        return website;
+    }
+
+    public int getStrength() {
+        return strength;
+    }
+
+    public String getStrengthLabel() {
+        return PasswordStrength.label(strength);
+    }
+
+    public int getReuseCount() {
+        return reuseCount;
+    }
+
+    public int getBreachCount() {
+        return breachCount;
+    }
+
+    public boolean isWeak() {
+        return strength <= PasswordStrength.WEAK;
+    }
+
+    public boolean isReused() {
+        return reuseCount > 1;
+    }
+
+    public boolean isBreached() {
+        return breachCount > 0;
+    }
+
+    public boolean hasIssues() {
+        return isWeak() || isReused() || isBreached();
+    }
+}
@@ -0,0 +1,60 @@
+package com.kesierzg.securevault.audit;
+
+public final class PasswordStrength {
+
+    public static final int VERY_WEAK = 0;
+    public static final int WEAK = 1;
+    public static final int FAIR = 2;
+    public static final int STRONG = 3;
+    public static final int VERY_STRONG = 4;
+
+    private static final String[] LABELS = {"bardzo słabe", "słabe", "średnie", "silne", "bardzo silne"};
+
+    private PasswordStrength() {
+    }
+
+    public static int score(CharSequence password) {
+        double bits = entropyBits(password);
+        if (bits < 28) {
+            return VERY_WEAK;
+        } else if (bits < 36) {
+            return WEAK;
+        } else if (bits < 60) {
+            return FAIR;
+        } else if (bits < 80) {
+            return STRONG;
+        }
+        return VERY_STRONG;
+    }
+
+    public static String label(int score) {
+        return LABELS[score];
+    }
+
+    static double entropyBits(CharSequence password) {
+        int length = password.length();
+        if (length == 0) {
+            return 0;
+        }
+        boolean lower = false, upper = false, digit = false, other = false;
+        double effectiveLength = 0;
+        char previous = 0;
+        for (int i = 0; i < length; i++) {
+            char c = password.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                lower = true;
+            } else if (c >= 'A' && c <= 'Z') {
+                upper = true;
+            } else if (c >= '0' && c <= '9') {
+                digit = true;
+            } else {
+                other = true;
+            }
+            boolean patterned = i > 0 && Math.abs(c - previous) <= 1;
+            effectiveLength += patterned ? 0.25 : 1;
+            previous = c;
+        }
+        int pool = (lower ? 26 : 0) + (upper ? 26 : 0) + (digit ? 10 : 0) + (other ? 33 : 0);
+        return effectiveLength * Math.log(pool) / Math.log(2);
+    }
+}
@@ -0,0 +1,544 @@
+package com.kesierzg.securevault.cli;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.kesierzg.securevault.agent.AgentClient;
+import com.kesierzg.securevault.agent.AgentSocket;
+import com.kesierzg.securevault.agent.VaultAgent;
+import com.kesierzg.securevault.model.PasswordEntry;
+import com.kesierzg.securevault.service.ExportService;
+import com.kesierzg.securevault.service.ConflictPolicy;
+import com.kesierzg.securevault.service.ImportService;
+import com.kesierzg.securevault.service.MergeResult;
+import com.kesierzg.securevault.service.ProgressListener;
+import com.kesierzg.securevault.service.SyncResult;
+import com.kesierzg.securevault.service.VaultService;
+import com.kesierzg.securevault.service.VaultSync;
+import java.io.BufferedReader;
+import java.io.Console;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+public class VaultCli {
+
+    static final int OK = 0;
+    static final int NOT_FOUND = 1;
+    static final int FAILED = 2;
+    static final int USAGE = 64;
+
+    private static final String PASSWORD_ENV = "SECUREVAULT_PASSWORD";
+    private static final String VAULT_ENV = "SECUREVAULT_FILE";
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+    private final PrintStream out;
+    private final PrintStream err;
+    private File vaultFile;
+    private boolean pretty;
+    private boolean passwordFromStdin;
+    private boolean useAgent = true;
+    private Path agentSocket = AgentSocket.defaultPath();
+    private BufferedReader stdin;
+
+    VaultCli(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+        String envFile = System.getenv(VAULT_ENV);
+        this.vaultFile = new File(envFile != null ? envFile : System.getProperty("user.dir") + File.separator + "vault.dat");
+    }
+
+    public static void main(String[] args) {
+        System.exit(new VaultCli(System.out, System.err).run(args));
+    }
+
+    int run(String[] args) {
+        Deque<String> rest = new ArrayDeque<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--vault" -> {
+                    if (++i >= args.length) {
+                        return usage("brak sciezki po --vault");
+                    }
+                    vaultFile = new File(args[i]);
+                }
+                case "--pretty" -> pretty = true;
+                case "--password-stdin" -> passwordFromStdin = true;
+                case "--no-agent" -> useAgent = false;
+                case "--socket" -> {
+                    if (++i >= args.length) {
+                        return usage("brak sciezki po --socket");
+                    }
+                    agentSocket = Path.of(args[i]);
+                }
+                case "-h", "--help" -> {
+                    printHelp(out);
+                    return OK;
+                }
+                default -> rest.add(args[i]);
+            }
+        }
+        String command = rest.poll();
+        if (command == null) {
+            return usage("brak komendy");
+        }
+        try {
+            return switch (command) {
+                case "get" -> get(rest);
+                case "list" -> list(rest);
+                case "add" -> add(rest);
+                case "import" -> importFile(rest);
+                case "export" -> exportFile(rest);
+                case "sync" -> sync(rest);
+                case "agent" -> agent(rest);
+                case "agent-lock" -> agentCommand("lock");
+                case "agent-stop" -> agentCommand("stop");
+                case "agent-status" -> agentCommand("status");
+                case "train" -> train();
+                default -> usage("nieznana komenda: " + command);
+            };
+        } catch (Exception e) {
+            return fail(e);
+        }
+    }
+
+    private int get(Deque<String> args) throws IOException {
+        String website = args.poll();
+        String field = null;
+        while (!args.isEmpty()) {
+            String arg = args.poll();
+            if (arg.equals("--field")) {
+                field = args.poll();
+            } else {
+                return usage("nieznana opcja: " + arg);
+            }
+        }
+        if (website == null) {
+            return usage("get <strona> [--field username|password]");
+        }
+        ObjectNode request = new ObjectMapper().createObjectNode().put("op", "get").put("website", website);
+        JsonNode agentResponse = viaAgent(request);
+        if (agentResponse != null) {
+            if (!agentResponse.path("ok").asBoolean()) {
+                writeError(agentResponse.path("error").asText());
+                return NOT_FOUND;
+            }
+            JsonNode entry = agentResponse.path("entry");
+            if (field != null) {
+                if (!entry.has(field)) {
+                    return usage("nieznane pole: " + field);
+                }
+                out.println(entry.path(field).asText());
+            } else {
+                printJson(entry);
+            }
+            return OK;
+        }
+        VaultService vault = open();
+        try {
+            PasswordEntry entry = vault.getEntry(website);
+            if (entry == null) {
+                List<PasswordEntry> found = vault.findEntries(website);
+                entry = found.isEmpty() ? null : found.get(0);
+            }
+            if (entry == null) {
+                writeError("nie znaleziono: " + website);
+                return NOT_FOUND;
+            }
+            if (field != null) {
+                switch (field) {
+                    case "username" -> out.println(entry.getUsername());
+                    case "password" -> out.println(entry.getPassword());
+                    case "website" -> out.println(entry.getWebsite());
+                    case "id" -> out.println(entry.getId());
+                    default -> {
+                        return usage("nieznane pole: " + field);
+                    }
+                }
+                out.flush();
+                return OK;
+            }
+            try (JsonGenerator gen = generator(out)) {
+                writeEntry(gen, entry, true);
+            }
+            out.println();
+            return OK;
+        } finally {
+            vault.close();
+        }
+    }
+
+    private int list(Deque<String> args) throws IOException {
+        String query = null;
+        int limit = Integer.MAX_VALUE;
+        while (!args.isEmpty()) {
+            String arg = args.poll();
+            switch (arg) {
+                case "--query" -> query = args.poll();
+                case "--limit" -> limit = Integer.parseInt(args.poll());
+                default -> {
+                    return usage("nieznana opcja: " + arg);
+                }
+            }
+        }
+        ObjectNode request = new ObjectMapper().createObjectNode();
+        if (query != null) {
+            request.put("op", "search").put("query", query).put("limit", limit);
+        } else {
+            request.put("op", "list");
+        }
+        JsonNode agentResponse = viaAgent(request);
+        if (agentResponse != null) {
+            if (!agentResponse.path("ok").asBoolean()) {
+                writeError(agentResponse.path("error").asText());
+                return FAILED;
+            }
+            printJson(agentResponse.path("entries"));
+            return OK;
+        }
+        VaultService vault = open();
+        try {
+            List<PasswordEntry> entries = query != null ? vault.searchEntries(query, limit) : vault.getEntries();
+            try (JsonGenerator gen = generator(out)) {
+                gen.writeStartArray();
+                int written = 0;
+                for (PasswordEntry entry : entries) {
+                    if (written++ >= limit) {
+                        break;
+                    }
+                    writeEntry(gen, entry, false);
+                }
+                gen.writeEndArray();
+            }
+            out.println();
+            return OK;
+        } finally {
+            vault.close();
+        }
+    }
+
+    private int add(Deque<String> args) throws IOException {
+        String website = args.poll();
+        String username = args.poll();
+        if (website == null || username == null) {
+            return usage("add <strona> <uzytkownik> (haslo wpisu jako kolejna linia stdin)");
+        }
+        String masterPassword = masterPassword();
+        String password = readLine("Hasło wpisu: ");
+        if (password == null || password.isEmpty()) {
+            return usage("brak hasla wpisu na stdin");
+        }
+        VaultService vault = load(masterPassword, true);
+        try {
+            String id = vault.addEntry(website, username, password);
+            try (JsonGenerator gen = generator(out)) {
+                gen.writeStartObject();
+                gen.writeStringField("id", id);
+                gen.writeEndObject();
+            }
+            out.println();
+            return OK;
+        } finally {
+            vault.close();
+        }
+    }
+
+    private int importFile(Deque<String> args) throws IOException {
+        String path = null;
+        ConflictPolicy policy = ConflictPolicy.KEEP_EXISTING;
+        while (!args.isEmpty()) {
+            String arg = args.poll();
+            if (arg.equals("--on-conflict")) {
+                String value = String.valueOf(args.poll());
+                switch (value) {
+                    case "keep" -> policy = ConflictPolicy.KEEP_EXISTING;
+                    case "overwrite" -> policy = ConflictPolicy.OVERWRITE;
+                    case "both" -> policy = ConflictPolicy.KEEP_BOTH;
+                    default -> {
+                        return usage("nieznana polityka konfliktow: " + value);
+                    }
+                }
+            } else if (path == null) {
+                path = arg;
+            } else {
+                return usage("nieznana opcja: " + arg);
+            }
+        }
+        if (path == null) {
+            return usage("import <plik.json> [--on-conflict keep|overwrite|both]");
+        }
+        VaultService vault = load(masterPassword(), true);
+        try {
+            File file = new File(path);
+            ImportService importService = new ImportService();
+            int[] read = new int[1];
+            MergeResult result = vault.mergeEntries(sink -> read[0] = importService.importFromBitwarden(file, sink),
+                    policy, ProgressListener.NONE);
+            try (JsonGenerator gen = generator(out)) {
+                gen.writeStartObject();
+                gen.writeNumberField("read", read[0]);
+                gen.writeNumberField("imported", result.getAdded() + result.getOverwritten());
+                gen.writeNumberField("added", result.getAdded());
+                gen.writeNumberField("identical", result.getIdentical());
+                gen.writeNumberField("conflicts", result.getConflicts());
+                gen.writeNumberField("overwritten", result.getOverwritten());
+                gen.writeEndObject();
+            }
+            out.println();
+            return OK;
+        } finally {
+            vault.close();
+        }
+    }
+
+    private int exportFile(Deque<String> args) throws IOException {
+        String path = args.poll();
+        if (path == null) {
+            return usage("export <plik.json>");
+        }
+        VaultService vault = open();
+        try {
+            new ExportService().exportToBitwarden(vault, new File(path), pretty);
+            return OK;
+        } finally {
+            vault.close();
+        }
+    }
+
+    private int sync(Deque<String> args) throws IOException {
+        String path = args.poll();
+        if (path == null || !args.isEmpty()) {
+            return usage("sync <plik>");
+        }
+        SyncResult result = new VaultSync().sync(vaultFile, new File(path), masterPassword());
+        try (JsonGenerator gen = generator(out)) {
+            gen.writeStartObject();
+            gen.writeNumberField("pulled", result.getPulled());
+            gen.writeNumberField("pushed", result.getPushed());
+            gen.writeNumberField("conflicts", result.getConflicts());
+            gen.writeNumberField("segmentsCompared", result.getSegmentsCompared());
+            gen.writeEndObject();
+        }
+        out.println();
+        return OK;
+    }
+
+    private int agent(Deque<String> args) throws IOException {
+        long idleMinutes = 15;
+        while (!args.isEmpty()) {
+            String arg = args.poll();
+            if (arg.equals("--idle-minutes")) {
+                idleMinutes = Long.parseLong(args.poll());
+            } else {
+                return usage("nieznana opcja: " + arg);
+            }
+        }
+        try (AgentClient existing = AgentClient.connect(agentSocket)) {
+            if (existing != null) {
+                writeError("agent juz dziala: " + agentSocket);
+                return FAILED;
+            }
+        }
+        if (!vaultFile.exists()) {
+            throw new IllegalStateException("brak bazy: " + vaultFile.getAbsolutePath());
+        }
+        VaultAgent agent = new VaultAgent(vaultFile, agentSocket, Duration.ofMinutes(idleMinutes), masterPassword());
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                agent.close();
+            } catch (IOException e) {
+                System.err.println("agent: " + e.getMessage());
+            }
+        }));
+        err.println("agent nasluchuje na " + agentSocket);
+        agent.serve();
+        return OK;
+    }
+
+    private int agentCommand(String op) throws IOException {
+        try (AgentClient client = AgentClient.connect(agentSocket)) {
+            if (client == null) {
+                writeError("agent nie dziala: " + agentSocket);
+                return FAILED;
+            }
+            printJson(client.send(client.request(op)));
+            return OK;
+        }
+    }
+
+    private JsonNode viaAgent(ObjectNode request) throws IOException {
+        if (!useAgent) {
+            return null;
+        }
+        try (AgentClient client = AgentClient.connect(agentSocket)) {
+            if (client == null) {
+                return null;
+            }
+            String vaultPath = vaultFile.getCanonicalPath();
+            request.put("vault", vaultPath);
+            JsonNode response = client.send(request);
+            if (!vaultPath.equals(response.path("vault").asText())) {
+                return null;
+            }
+            if (!response.path("ok").asBoolean() && "locked".equals(response.path("error").asText())) {
+                JsonNode unlocked = client.send(client.request("unlock").put("password", masterPassword()));
+                if (!unlocked.path("ok").asBoolean()) {
+                    return unlocked;
+                }
+                response = client.send(request);
+            }
+            return response;
+        }
+    }
+
+    private void printJson(JsonNode node) throws IOException {
+        try (JsonGenerator gen = generator(out)) {
+            new ObjectMapper().writeTree(gen, node);
+        }
+        out.println();
+    }
+
+    private int train() throws IOException {
+        Path directory = Files.createTempDirectory("securevault-cli");
+        File previous = vaultFile;
+        try {
+            vaultFile = directory.resolve("vault.dat").toFile();
+            VaultService vault = new VaultService("train", 1000);
+            vault.saveToFile(vaultFile);
+            vault.addEntry("example.com", "user", "password");
+            vault.close();
+            VaultService loaded = VaultService.loadFromFile(vaultFile, "train");
+            try (JsonGenerator gen = generator(OutputStream.nullOutputStream())) {
+                gen.writeStartArray();
+                for (PasswordEntry entry : loaded.getEntries()) {
+                    writeEntry(gen, entry, true);
+                }
+                gen.writeEndArray();
+            }
+            File export = directory.resolve("export.json").toFile();
+            new ExportService().exportToBitwarden(loaded, export, false);
+            loaded.addEntries(new ImportService().importFromBitwarden(export));
+            loaded.close();
+            return OK;
+        } finally {
+            vaultFile = previous;
+            try (var files = Files.walk(directory)) {
+                for (Path p : files.sorted((a, b) -> b.compareTo(a)).toList()) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    private VaultService open() throws IOException {
+        return load(masterPassword(), false);
+    }
+
+    private VaultService load(String masterPassword, boolean writable) {
+        if (!vaultFile.exists()) {
+            throw new IllegalStateException("brak bazy: " + vaultFile.getAbsolutePath());
+        }
+        return writable ? VaultService.loadFromFile(vaultFile, masterPassword)
+                : VaultService.loadReadOnly(vaultFile, masterPassword);
+    }
+
+    private String masterPassword() throws IOException {
+        if (!passwordFromStdin) {
+            String env = System.getenv(PASSWORD_ENV);
+            if (env != null) {
+                return env;
+            }
+        }
+        String password = readLine("Hasło główne: ");
+        if (password == null || password.isEmpty()) {
+            throw new IllegalStateException("brak hasla glownego (" + PASSWORD_ENV + ", --password-stdin lub konsola)");
+        }
+        return password;
+    }
+
+    private String readLine(String prompt) throws IOException {
+        Console console = System.console();
+        if (console != null && !passwordFromStdin) {
+            char[] chars = console.readPassword(prompt);
+            return chars != null ? new String(chars) : null;
+        }
+        if (stdin == null) {
+            stdin = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        }
+        return stdin.readLine();
+    }
+
+    private JsonGenerator generator(OutputStream stream) throws IOException {
+        JsonGenerator gen = jsonFactory.createGenerator(stream, JsonEncoding.UTF8);
+        gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (pretty) {
+            gen.useDefaultPrettyPrinter();
+        }
+        return gen;
+    }
+
+    private static void writeEntry(JsonGenerator gen, PasswordEntry entry, boolean withPassword) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("id", entry.getId());
+        gen.writeStringField("website", entry.getWebsite());
+        gen.writeStringField("username", entry.getUsername());
+        if (withPassword) {
+            gen.writeStringField("password", entry.getPassword());
+        }
+        gen.writeEndObject();
+    }
+
+    private void writeError(String message) {
+        try (JsonGenerator gen = generator(err)) {
+            gen.writeStartObject();
+            gen.writeStringField("error", message);
+            gen.writeEndObject();
+        } catch (IOException e) {
+            err.print(message);
+        }
+        err.println();
+    }
+
+    private int fail(Exception e) {
+        String message = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        writeError(message);
+        return FAILED;
+    }
+
+    private int usage(String message) {
+        writeError(message);
+        printHelp(err);
+        return USAGE;
+    }
+
+    private static void printHelp(PrintStream stream) {
+        stream.println("""
+                uzycie: securevault-cli [--vault plik] [--socket plik] [--no-agent] [--pretty] [--password-stdin] <komenda>
+
+                  get <strona> [--field id|website|username|password]
+                  list [--query tekst] [--limit n]
+                  add <strona> <uzytkownik>        haslo wpisu z konsoli lub kolejnej linii stdin
+                  import <plik.json> [--on-conflict keep|overwrite|both]
+                                                   import z eksportu Bitwardena bez duplikatow
+                  export <plik.json>               eksport do formatu Bitwardena
+                  sync <plik>                      dwukierunkowa synchronizacja z kopia bazy (np. na dysku sieciowym)
+                  agent [--idle-minutes n]         odblokowuje baze raz i obsluguje get/list przez gniazdo
+                  agent-status | agent-lock | agent-stop
+
+                haslo glowne: zmienna SECUREVAULT_PASSWORD, --password-stdin albo konsola
+                plik bazy: --vault, zmienna SECUREVAULT_FILE albo ./vault.dat
+                gniazdo agenta: --socket, zmienna SECUREVAULT_AGENT_SOCK albo domyslne; --no-agent pomija agenta""");
+    }
+}
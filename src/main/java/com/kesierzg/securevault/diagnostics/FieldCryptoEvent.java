@@ -0,0 +1,24 @@
+package com.kesierzg.securevault.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("securevault.FieldCrypto")
+@Label("Field Encrypt/Decrypt")
+@Category("SecureVault")
+@Description("Single field encryption or decryption, disabled by default because it fires per field")
+@Enabled(false)
+@StackTrace(false)
+class FieldCryptoEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Bytes")
+    long bytes;
+}
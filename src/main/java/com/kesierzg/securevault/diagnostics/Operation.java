@@ -0,0 +1,27 @@
+package com.kesierzg.securevault.diagnostics;
+
+public enum Operation {
+    KEY_DERIVATION("Wyprowadzanie klucza"),
+    ENCRYPT("Szyfrowanie pola"),
+    DECRYPT("Odszyfrowanie pola"),
+    GET_ENTRIES("Pobranie wpisów"),
+    DECRYPT_ALL("Odszyfrowanie całej bazy"),
+    SAVE_SERIALIZE("Zapis - przygotowanie migawki"),
+    SAVE_WRITE("Zapis - migawka na dysk"),
+    JOURNAL_APPEND("Zapis - dziennik"),
+    LOAD_READ("Wczytanie - odczyt i parsowanie"),
+    LOAD_INDEX("Wczytanie - indeksowanie"),
+    LOAD_REPLAY("Wczytanie - odtworzenie dziennika"),
+    AUDIT("Audyt haseł"),
+    AUDIT_BREACH_LOOKUP("Audyt - wyszukiwanie w bazie wycieków");
+
+    private final String label;
+
+    Operation(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
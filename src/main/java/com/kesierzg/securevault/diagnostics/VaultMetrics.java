@@ -0,0 +1,91 @@
+package com.kesierzg.securevault.diagnostics;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+public final class VaultMetrics {
+
+    private static final Map<Operation, LatencyHistogram> HISTOGRAMS = new EnumMap<>(Operation.class);
+
+    static {
+        for (Operation operation : Operation.values()) {
+            HISTOGRAMS.put(operation, new LatencyHistogram());
+        }
+    }
+
+    private VaultMetrics() {
+    }
+
+    public static Timer start(Operation operation) {
+        return new Timer(operation);
+    }
+
+    public static void recordField(Operation operation, long startNanos, long bytes) {
+        long elapsed = System.nanoTime() - startNanos;
+        HISTOGRAMS.get(operation).record(elapsed, 1);
+        FieldCryptoEvent event = new FieldCryptoEvent();
+        if (event.isEnabled()) {
+            event.operation = operation.name();
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    public static LatencyHistogram histogram(Operation operation) {
+        return HISTOGRAMS.get(operation);
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : HISTOGRAMS.values()) {
+            histogram.reset();
+        }
+    }
+
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-36s %10s %12s %10s %10s %10s %10s %12s%n",
+                "operacja", "ile", "elementy", "sr [ms]", "p50 [ms]", "p99 [ms]", "max [ms]", "suma [ms]"));
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram h = HISTOGRAMS.get(operation);
+            sb.append(String.format(Locale.ROOT, "%-36s %10d %12d %10.3f %10.3f %10.3f %10.3f %12.1f%n",
+                    operation.getLabel(), h.getCount(), h.getItems(),
+                    millis(h.getMeanNanos()), millis(h.percentileNanos(50)), millis(h.percentileNanos(99)),
+                    millis(h.getMaxNanos()), millis(h.getTotalNanos())));
+        }
+        return sb.toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    public static final class Timer implements AutoCloseable {
+        private final Operation operation;
+        private final VaultOperationEvent event = new VaultOperationEvent();
+        private final long startNanos;
+        private long items;
+
+        private Timer(Operation operation) {
+            this.operation = operation;
+            event.begin();
+            this.startNanos = System.nanoTime();
+        }
+
+        public Timer items(long items) {
+            this.items = items;
+            return this;
+        }
+
+        @Override
+        public void close() {
+            HISTOGRAMS.get(operation).record(System.nanoTime() - startNanos, items);
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation.name();
+                event.items = items;
+                event.commit();
+            }
+        }
+    }
+}
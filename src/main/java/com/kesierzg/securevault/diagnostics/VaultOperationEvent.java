@@ -0,0 +1,22 @@
+package com.kesierzg.securevault.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("securevault.VaultOperation")
+@Label("Vault Operation")
+@Category("SecureVault")
+@Description("Key derivation, persistence and bulk decryption in the vault")
+@StackTrace(false)
+class VaultOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Items")
+    long items;
+}
@@ -1,14 +1,46 @@
 package com.kesierzg.securevault.model;
 
-public class NoteEntry {
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+public class NoteEntry implements Versioned {
+    private String id;
     private String title;
     private String content;
+    private long revision;
+    private boolean deleted;
 
     public NoteEntry() {}
 
     public NoteEntry(String title, String content) {
+        this(null, title, content);
+    }
+
+    public NoteEntry(String id, String title, String content) {
+        this(id, title, content, 0, false);
+    }
+
+    public NoteEntry(String id, String title, String content, long revision, boolean deleted) {
+        this.id = id;
         this.title = title;
         this.content = content;
+        this.revision = revision;
+        this.deleted = deleted;
+    }
+
+    public static NoteEntry tombstone(String id, long revision) {
+        return new NoteEntry(id, "", "", revision, true);
+    }
+
+    public NoteEntry withRevision(long revision) {
+        return new NoteEntry(id, title, content, revision, deleted);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
     }
 
     public String getTitle() {
@@ -26,4 +58,22 @@ public class NoteEntry {
     public void setContent(String content) {
         this.content = content;
     }
-}
\ No newline at end of file
+
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public long getRevision() {
+        return revision;
+    }
+
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(boolean deleted) {
+        this.deleted = deleted;
+    }
+}
@@ -1,24 +1,55 @@
 package com.kesierzg.securevault.model;
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
-public class PasswordEntry {
+public class PasswordEntry implements Versioned {
+    private String id;
     private String website;
     private String username;
     private String password;
+    private long revision;
+    private boolean deleted;
 
     @JsonCreator
     public PasswordEntry(
+            @JsonProperty("id") String id,
             @JsonProperty("website") String website,
             @JsonProperty("username") String username,
-            @JsonProperty("password") String password
+            @JsonProperty("password") String password,
+            @JsonProperty("revision") long revision,
+            @JsonProperty("deleted") boolean deleted
     ) {
+        this.id = id;
         this.website = website;
         this.username = username;
         this.password = password;
+        this.revision = revision;
+        this.deleted = deleted;
     }
 
+    public PasswordEntry(String id, String website, String username, String password) {
+        this(id, website, username, password, 0, false);
+    }
+
+    public PasswordEntry(String website, String username, String password) {
+        this(null, website, username, password);
+    }
+
+    public static PasswordEntry tombstone(String id, long revision) {
+        return new PasswordEntry(id, "", "", "", revision, true);
+    }
+
+    public PasswordEntry withRevision(long revision) {
+        return new PasswordEntry(id, website, username, password, revision, deleted);
+    }
+
+    public String getId() { return id; }
     public String getWebsite() { return website; }
     public String getUsername() { return username; }
     public String getPassword() { return password; }
-}
\ No newline at end of file
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public long getRevision() { return revision; }
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public boolean isDeleted() { return deleted; }
+}
@@ -0,0 +1,10 @@
+package com.kesierzg.securevault.model;
+
+public interface Versioned {
+
+    String getId();
+
+    long getRevision();
+
+    boolean isDeleted();
+}
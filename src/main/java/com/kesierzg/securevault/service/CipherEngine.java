@@ -0,0 +1,135 @@
+package com.kesierzg.securevault.service;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+public class CipherEngine {
+
+    private static final String CIPHER_TRANSFORMATION = "AES/CBC/PKCS5Padding";
+    private static final String AEAD_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int BLOCK_SIZE = 16;
+    private static final int TAG_BITS = 128;
+    public static final int TAG_LENGTH = TAG_BITS / 8;
+
+    private final ThreadLocal<ThreadCipher> ciphers = ThreadLocal.withInitial(ThreadCipher::new);
+    private final ThreadLocal<Cipher> aeadCiphers = new ThreadLocal<>();
+
+    public int encryptedLength(int plainLength) {
+        return (plainLength / BLOCK_SIZE + 1) * BLOCK_SIZE;
+    }
+
+    public byte[] encrypt(byte[] plain, SecretKeySpec key, byte[] iv) throws GeneralSecurityException {
+        byte[] out = new byte[encryptedLength(plain.length)];
+        encrypt(plain, 0, plain.length, out, 0, key, iv);
+        return out;
+    }
+
+    public int encrypt(byte[] in, int inOffset, int length, byte[] out, int outOffset,
+                       SecretKeySpec key, byte[] iv) throws GeneralSecurityException {
+        Cipher cipher = cipher(Cipher.ENCRYPT_MODE, key, iv);
+        try {
+            return cipher.doFinal(in, inOffset, length, out, outOffset);
+        } catch (GeneralSecurityException e) {
+            reset();
+            throw e;
+        }
+    }
+
+    public int encrypt(ByteBuffer in, ByteBuffer out, SecretKeySpec key, byte[] iv) throws GeneralSecurityException {
+        Cipher cipher = cipher(Cipher.ENCRYPT_MODE, key, iv);
+        try {
+            return cipher.doFinal(in, out);
+        } catch (GeneralSecurityException e) {
+            reset();
+            throw e;
+        }
+    }
+
+    public byte[] decrypt(byte[] cipherText, SecretKeySpec key, byte[] iv) throws GeneralSecurityException {
+        int length = decrypt(cipherText, 0, cipherText.length, key, iv);
+        return Arrays.copyOf(cipherText, length);
+    }
+
+    public int decrypt(byte[] buffer, int offset, int length, SecretKeySpec key, byte[] iv) throws GeneralSecurityException {
+        Cipher cipher = cipher(Cipher.DECRYPT_MODE, key, iv);
+        try {
+            return cipher.doFinal(buffer, offset, length, buffer, offset);
+        } catch (GeneralSecurityException e) {
+            reset();
+            throw e;
+        }
+    }
+
+    public int decrypt(ByteBuffer in, ByteBuffer out, SecretKeySpec key, byte[] iv) throws GeneralSecurityException {
+        Cipher cipher = cipher(Cipher.DECRYPT_MODE, key, iv);
+        try {
+            return cipher.doFinal(in, out);
+        } catch (GeneralSecurityException e) {
+            reset();
+            throw e;
+        }
+    }
+
+    public int seal(byte[] in, int inOffset, int length, byte[] out, int outOffset,
+                    SecretKeySpec key, byte[] nonce, byte[] aad) throws GeneralSecurityException {
+        return aeadCipher(Cipher.ENCRYPT_MODE, key, nonce, aad).doFinal(in, inOffset, length, out, outOffset);
+    }
+
+    public int open(byte[] in, int inOffset, int length, byte[] out, int outOffset,
+                    SecretKeySpec key, byte[] nonce, byte[] aad) throws GeneralSecurityException {
+        return aeadCipher(Cipher.DECRYPT_MODE, key, nonce, aad).doFinal(in, inOffset, length, out, outOffset);
+    }
+
+    public int seal(ByteBuffer in, ByteBuffer out, SecretKeySpec key, byte[] nonce, byte[] aad) throws GeneralSecurityException {
+        return aeadCipher(Cipher.ENCRYPT_MODE, key, nonce, aad).doFinal(in, out);
+    }
+
+    public int open(ByteBuffer in, ByteBuffer out, SecretKeySpec key, byte[] nonce, byte[] aad) throws GeneralSecurityException {
+        return aeadCipher(Cipher.DECRYPT_MODE, key, nonce, aad).doFinal(in, out);
+    }
+
+    private Cipher aeadCipher(int mode, SecretKeySpec key, byte[] nonce, byte[] aad) throws GeneralSecurityException {
+        Cipher cipher = aeadCiphers.get();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(AEAD_TRANSFORMATION);
+            aeadCiphers.set(cipher);
+        }
+        cipher.init(mode, key, new GCMParameterSpec(TAG_BITS, nonce));
+        if (aad != null) {
+            cipher.updateAAD(aad);
+        }
+        return cipher;
+    }
+
+    private Cipher cipher(int mode, SecretKeySpec key, byte[] iv) throws GeneralSecurityException {
+        ThreadCipher tc = ciphers.get();
+        if (tc.cipher == null) {
+            tc.cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
+        }
+        if (tc.mode != mode || tc.key != key || tc.iv != iv) {
+            tc.cipher.init(mode, key, new IvParameterSpec(iv));
+            tc.mode = mode;
+            tc.key = key;
+            tc.iv = iv;
+        }
+        return tc.cipher;
+    }
+
+    private void reset() {
+        ThreadCipher tc = ciphers.get();
+        tc.key = null;
+        tc.iv = null;
+    }
+
+    private static class ThreadCipher {
+        private Cipher cipher;
+        private int mode;
+        private SecretKeySpec key;
+        private byte[] iv;
+    }
+}
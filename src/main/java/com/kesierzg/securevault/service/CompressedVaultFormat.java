@@ -0,0 +1,405 @@
+package com.kesierzg.securevault.service;
+
+import com.kesierzg.securevault.model.NoteEntry;
+import com.kesierzg.securevault.model.PasswordEntry;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+class CompressedVaultFormat {
+
+    static final int MAGIC = 0x53564C5A;
+    private static final short VERSION = 1;
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int NONCE_PREFIX_LENGTH = 8;
+    private static final int TAG_BITS = 128;
+    private static final String KEY_LABEL = "securevault-compressed-file-v1";
+    private static final int RECORDS = 0;
+    private static final int SECRETS = 1;
+
+    static boolean isCompressed(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            byte[] magic = in.readNBytes(4);
+            return magic.length == 4 && ByteBuffer.wrap(magic).getInt() == MAGIC;
+        }
+    }
+
+    static void write(File file, EncryptedVaultData data, EncryptionService encryptionService,
+                      SecretKeySpec key) throws IOException {
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(headerBytes);
+        byte[] wrappedKey = data.getWrappedKeyBytes();
+        header.writeInt(MAGIC);
+        header.writeShort(VERSION);
+        header.writeInt(data.iterations);
+        header.writeLong(data.generation);
+        writeShortBytes(header, data.getSaltBytes());
+        writeShortBytes(header, data.getIvBytes());
+        writeShortBytes(header, wrappedKey != null ? wrappedKey : new byte[0]);
+        header.write(encryptionService.generateIv(), 0, NONCE_PREFIX_LENGTH);
+        byte[] aad = headerBytes.toByteArray();
+
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (FileOutputStream fileOut = new FileOutputStream(file)) {
+            fileOut.write(aad);
+            SecretKeySpec fileKey = fileKey(encryptionService, key);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(
+                    new ChunkedGcmOutputStream(fileOut, fileKey, aad, RECORDS), deflater, CHUNK_SIZE), CHUNK_SIZE))) {
+                writeRecords(out, data);
+            }
+            try (DataOutputStream out = new DataOutputStream(new ChunkedGcmOutputStream(fileOut, fileKey, aad, SECRETS))) {
+                writeSecrets(out, data);
+            }
+            fileOut.getFD().sync();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static EncryptedVaultData readHeader(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            return readHeader(in);
+        }
+    }
+
+    static void readPayload(File file, EncryptedVaultData data, EncryptionService encryptionService,
+                            SecretKeySpec key) throws IOException {
+        Inflater inflater = new Inflater();
+        try (InputStream fileIn = new BufferedInputStream(Files.newInputStream(file.toPath()), CHUNK_SIZE)) {
+            DataInputStream in = new DataInputStream(fileIn);
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+            readHeader(new DataInputStream(new TeeInputStream(in, headerBytes)));
+            byte[] aad = headerBytes.toByteArray();
+            SecretKeySpec fileKey = fileKey(encryptionService, key);
+            ChunkedGcmInputStream records = new ChunkedGcmInputStream(in, fileKey, aad, RECORDS);
+            readPayload(new DataInputStream(new BufferedInputStream(new InflaterInputStream(records, inflater, CHUNK_SIZE), CHUNK_SIZE)),
+                    records, new DataInputStream(new ChunkedGcmInputStream(in, fileKey, aad, SECRETS)), data);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void writeRecords(DataOutputStream out, EncryptedVaultData data) throws IOException {
+        out.writeInt(data.entries.size());
+        out.writeInt(data.notes.size());
+        for (PasswordEntry entry : data.entries) {
+            writeBytes(out, entry.getId().getBytes(StandardCharsets.UTF_8));
+            out.writeLong(entry.getRevision());
+            out.writeBoolean(entry.isDeleted());
+            writeBytes(out, entry.getWebsite().getBytes(StandardCharsets.UTF_8));
+        }
+        for (NoteEntry note : data.notes) {
+            writeBytes(out, note.getId().getBytes(StandardCharsets.UTF_8));
+            out.writeLong(note.getRevision());
+            out.writeBoolean(note.isDeleted());
+            writeBytes(out, note.getTitle().getBytes(StandardCharsets.UTF_8));
+            writeBytes(out, note.getContent().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void writeSecrets(DataOutputStream out, EncryptedVaultData data) throws IOException {
+        Base64.Decoder base64 = Base64.getDecoder();
+        for (PasswordEntry entry : data.entries) {
+            writeBytes(out, base64.decode(entry.getUsername()));
+            writeBytes(out, base64.decode(entry.getPassword()));
+        }
+    }
+
+    private static void readPayload(DataInputStream in, ChunkedGcmInputStream records, DataInputStream secrets,
+                                    EncryptedVaultData data) throws IOException {
+        int entryCount = in.readInt();
+        int noteCount = in.readInt();
+        String[] ids = new String[entryCount];
+        long[] revisions = new long[entryCount];
+        boolean[] deleted = new boolean[entryCount];
+        String[] websites = new String[entryCount];
+        for (int i = 0; i < entryCount; i++) {
+            ids[i] = readString(in);
+            revisions[i] = in.readLong();
+            deleted[i] = in.readBoolean();
+            websites[i] = readString(in);
+        }
+        List<NoteEntry> notes = new ArrayList<>(noteCount);
+        for (int i = 0; i < noteCount; i++) {
+            String id = readString(in);
+            long revision = in.readLong();
+            boolean noteDeleted = in.readBoolean();
+            notes.add(new NoteEntry(id, new String(readBytes(in), StandardCharsets.UTF_8),
+                    new String(readBytes(in), StandardCharsets.UTF_8), revision, noteDeleted));
+        }
+        records.drain();
+
+        Base64.Encoder base64 = Base64.getEncoder();
+        List<PasswordEntry> entries = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            entries.add(new PasswordEntry(ids[i], websites[i], base64.encodeToString(readBytes(secrets)),
+                    base64.encodeToString(readBytes(secrets)), revisions[i], deleted[i]));
+        }
+        data.entries = entries;
+        data.notes = notes;
+    }
+
+    private static EncryptedVaultData readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("to nie jest skompresowana baza danych");
+        }
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException("nieznana wersja bazy: " + version);
+        }
+        int iterations = in.readInt();
+        long generation = in.readLong();
+        byte[] salt = readShortBytes(in);
+        byte[] iv = readShortBytes(in);
+        byte[] wrappedKey = readShortBytes(in);
+        in.readFully(new byte[NONCE_PREFIX_LENGTH]);
+        Base64.Encoder base64 = Base64.getEncoder();
+        return new EncryptedVaultData(base64.encodeToString(salt), base64.encodeToString(iv), iterations,
+                wrappedKey.length > 0 ? base64.encodeToString(wrappedKey) : null, generation, List.of(), List.of());
+    }
+
+    private static SecretKeySpec fileKey(EncryptionService encryptionService, SecretKeySpec key) throws IOException {
+        try {
+            return new SecretKeySpec(encryptionService.deriveSubkey(key, KEY_LABEL).getEncoded(), "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IOException("nie udao sie wyprowadzic klucza pliku", e);
+        }
+    }
+
+    private static Cipher chunkCipher(int mode, SecretKeySpec key, byte[] aad, int section, int chunk, boolean last)
+            throws GeneralSecurityException {
+        if (chunk < 0) {
+            throw new GeneralSecurityException("za duzo blokow w sekcji " + section);
+        }
+        ByteBuffer nonce = ByteBuffer.allocate(12);
+        nonce.put(aad, aad.length - NONCE_PREFIX_LENGTH, NONCE_PREFIX_LENGTH);
+        nonce.putInt(section << 31 | chunk);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(mode, key, new GCMParameterSpec(TAG_BITS, nonce.array()));
+        cipher.updateAAD(aad);
+        cipher.updateAAD(ByteBuffer.allocate(9).putInt(section).putInt(chunk).put((byte) (last ? 1 : 0)).array());
+        return cipher;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static void writeShortBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readShortBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedShort()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static class ChunkedGcmOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private final SecretKeySpec key;
+        private final byte[] aad;
+        private final int section;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private final byte[] sealed = new byte[CHUNK_SIZE + TAG_BITS / 8];
+        private int length;
+        private int chunk;
+        private boolean closed;
+
+        ChunkedGcmOutputStream(OutputStream out, SecretKeySpec key, byte[] aad, int section) {
+            this.out = out;
+            this.key = key;
+            this.aad = aad;
+            this.section = section;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (length == CHUNK_SIZE) {
+                seal(false);
+            }
+            buffer[length++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (length == CHUNK_SIZE) {
+                    seal(false);
+                }
+                int n = Math.min(len, CHUNK_SIZE - length);
+                System.arraycopy(b, off, buffer, length, n);
+                length += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                seal(true);
+                out.flush();
+            }
+        }
+
+        private void seal(boolean last) throws IOException {
+            int sealedLength;
+            try {
+                sealedLength = chunkCipher(Cipher.ENCRYPT_MODE, key, aad, section, chunk, last).doFinal(buffer, 0, length, sealed, 0);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("nie udao sie zaszyfrowac bazy", e);
+            }
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeByte(last ? 1 : 0);
+            data.writeInt(sealedLength);
+            data.write(sealed, 0, sealedLength);
+            chunk++;
+            length = 0;
+        }
+    }
+
+    private static class ChunkedGcmInputStream extends InputStream {
+
+        private final DataInputStream in;
+        private final SecretKeySpec key;
+        private final byte[] aad;
+        private final int section;
+        private final byte[] sealed = new byte[CHUNK_SIZE + TAG_BITS / 8];
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int position;
+        private int length;
+        private int chunk;
+        private boolean last;
+
+        ChunkedGcmInputStream(DataInputStream in, SecretKeySpec key, byte[] aad, int section) {
+            this.in = in;
+            this.key = key;
+            this.aad = aad;
+            this.section = section;
+        }
+
+        void drain() throws IOException {
+            while (fill()) {
+                position = length;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return buffer[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, length - position);
+            System.arraycopy(buffer, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        private boolean fill() throws IOException {
+            while (position == length) {
+                if (last) {
+                    return false;
+                }
+                int sealedLength;
+                try {
+                    last = in.readByte() != 0;
+                    sealedLength = in.readInt();
+                } catch (EOFException e) {
+                    throw new IOException("plik bazy jest uciety", e);
+                }
+                if (sealedLength < TAG_BITS / 8 || sealedLength > sealed.length) {
+                    throw new IOException("uszkodzony blok bazy: " + chunk);
+                }
+                in.readFully(sealed, 0, sealedLength);
+                try {
+                    length = chunkCipher(Cipher.DECRYPT_MODE, key, aad, section, chunk, last).doFinal(sealed, 0, sealedLength, buffer, 0);
+                } catch (AEADBadTagException e) {
+                    throw new IOException("blok bazy " + chunk + " nie przeszedl weryfikacji (zle haslo albo uszkodzony plik)", e);
+                } catch (GeneralSecurityException e) {
+                    throw new IOException("nie udao sie rozszyfrowac bazy", e);
+                }
+                position = 0;
+                chunk++;
+            }
+            return true;
+        }
+    }
+
+    private static class TeeInputStream extends InputStream {
+
+        private final InputStream in;
+        private final OutputStream copy;
+
+        TeeInputStream(InputStream in, OutputStream copy) {
+            this.in = in;
+            this.copy = copy;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                copy.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0) {
+                copy.write(b, off, n);
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.kesierzg.securevault.service;
+
+public enum ConflictPolicy {
+    KEEP_EXISTING("Zostaw istniejące"),
+    OVERWRITE("Nadpisz importowanym"),
+    KEEP_BOTH("Zachowaj oba");
+
+    private final String label;
+
+    ConflictPolicy(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
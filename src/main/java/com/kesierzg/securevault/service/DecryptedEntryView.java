@@ -0,0 +1,34 @@
+package com.kesierzg.securevault.service;
+
+import com.kesierzg.securevault.model.PasswordEntry;
+
+public class DecryptedEntryView extends PasswordEntry {
+
+    private final VaultService vault;
+
+    DecryptedEntryView(PasswordEntry encrypted, VaultService vault) {
+        super(encrypted.getId(), encrypted.getWebsite(), encrypted.getUsername(), encrypted.getPassword(),
+                encrypted.getRevision(), encrypted.isDeleted());
+        this.vault = vault;
+    }
+
+    // String getters serve the explicit reveal paths (edit dialog, CLI/agent output, audit);
+    // table rendering goes through the pooled SecretValue accessors below.
+    @Override
+    public String getUsername() {
+        return vault.decryptField(getId(), VaultService.USERNAME, super.getUsername());
+    }
+
+    @Override
+    public String getPassword() {
+        return vault.decryptField(getId(), VaultService.PASSWORD, super.getPassword());
+    }
+
+    public SecretValue getUsernameSecret() {
+        return vault.decryptSecret(getId(), VaultService.USERNAME, super.getUsername());
+    }
+
+    public SecretValue getPasswordSecret() {
+        return vault.decryptSecret(getId(), VaultService.PASSWORD, super.getPassword());
+    }
+}
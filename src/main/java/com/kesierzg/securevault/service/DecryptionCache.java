@@ -0,0 +1,51 @@
+package com.kesierzg.securevault.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+class DecryptionCache {
+
+    private final int capacity;
+    private final LinkedHashMap<String, SecretValue> plainTexts;
+
+    DecryptionCache(int capacity) {
+        this.capacity = capacity;
+        this.plainTexts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SecretValue> eldest) {
+                if (size() > DecryptionCache.this.capacity) {
+                    eldest.getValue().wipe();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    synchronized SecretValue get(String cipherText) {
+        return plainTexts.get(cipherText);
+    }
+
+    synchronized SecretValue put(String cipherText, SecretValue plainText) {
+        SecretValue existing = plainTexts.putIfAbsent(cipherText, plainText);
+        if (existing != null) {
+            plainText.wipe();
+            return existing;
+        }
+        return plainText;
+    }
+
+    synchronized void invalidate(String cipherText) {
+        SecretValue removed = plainTexts.remove(cipherText);
+        if (removed != null) {
+            removed.wipe();
+        }
+    }
+
+    synchronized void clear() {
+        for (SecretValue value : plainTexts.values()) {
+            value.wipe();
+        }
+        plainTexts.clear();
+    }
+}
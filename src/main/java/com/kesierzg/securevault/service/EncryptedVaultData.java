@@ -0,0 +1,64 @@
+package com.kesierzg.securevault.service;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.kesierzg.securevault.model.NoteEntry;
+import com.kesierzg.securevault.model.PasswordEntry;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+@JsonIgnoreProperties(ignoreUnknown = true)
+class EncryptedVaultData {
+    public String salt;
+    public String iv;
+    public int iterations;
+    public String wrappedKey;
+    public long generation;
+    public boolean sealedFields;
+    public List<PasswordEntry> entries;
+    public List<NoteEntry> notes;
+
+    @JsonCreator
+    public EncryptedVaultData(
+            @JsonProperty("salt") String salt,
+            @JsonProperty("iv") String iv,
+            @JsonProperty("iterations") int iterations,
+            @JsonProperty("wrappedKey") String wrappedKey,
+            @JsonProperty("generation") long generation,
+            @JsonProperty("entries") List<PasswordEntry> entries,
+            @JsonProperty("notes") List<NoteEntry> notes) {
+        this.salt = salt;
+        this.iv = iv;
+        this.iterations = iterations > 0 ? iterations : EncryptionService.DEFAULT_ITERATIONS;
+        this.wrappedKey = wrappedKey;
+        this.generation = generation;
+        this.entries = entries;
+        this.notes = notes != null ? notes : new ArrayList<>();
+    }
+
+    public EncryptedVaultData(byte[] salt, byte[] iv, int iterations, byte[] wrappedKey,
+                              List<PasswordEntry> entries, List<NoteEntry> notes, long generation) {
+        this.salt = Base64.getEncoder().encodeToString(salt);
+        this.iv = Base64.getEncoder().encodeToString(iv);
+        this.iterations = iterations;
+        this.wrappedKey = wrappedKey != null ? Base64.getEncoder().encodeToString(wrappedKey) : null;
+        this.generation = generation;
+        this.entries = entries;
+        this.notes = notes != null ? notes : new ArrayList<>();
+    }
+    @JsonIgnore
+    public byte[] getSaltBytes() {
+        return Base64.getDecoder().decode(salt);
+    }
+    @JsonIgnore
+    public byte[] getIvBytes() {
+        return Base64.getDecoder().decode(iv);
+    }
+    @JsonIgnore
+    public byte[] getWrappedKeyBytes() {
+        return wrappedKey != null ? Base64.getDecoder().decode(wrappedKey) : null;
+    }
+}
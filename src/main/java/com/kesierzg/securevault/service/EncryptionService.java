@@ -1,22 +1,34 @@
 package com.kesierzg.securevault.service;
+import com.kesierzg.securevault.diagnostics.Operation;
+import com.kesierzg.securevault.diagnostics.VaultMetrics;
+import javax.crypto.AEADBadTagException;
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
 import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
 
 public class EncryptionService {
 
     private static final int KEY_SIZE = 256;
-    private static final int ITERATIONS = 65536;
+    public static final int DEFAULT_ITERATIONS = 65536;
     private static final int SALT_LENGTH = 16;
     private static final int IV_LENGTH = 16;
     private static final String SECRET_KEY_ALGORITHM = "PBKDF2WithHmacSHA256";
-    private static final String CIPHER_TRANSFORMATION = "AES/CBC/PKCS5Padding";
+    private static final String KEY_WRAP_ALGORITHM = "AESWrap";
+    private static final String SUBKEY_ALGORITHM = "HmacSHA256";
+    private static final byte[] FIELD_HEADER = {'S', 'V', 2};
+    private static final int NONCE_LENGTH = 12;
+    private static final int BLOCK_SIZE = 16;
 
     private final SecureRandom secureRandom = new SecureRandom();
+    private final CipherEngine cipherEngine = new CipherEngine();
 
     public byte[] generateSalt() {
         byte[] salt = new byte[SALT_LENGTH];
@@ -30,25 +42,182 @@ public class EncryptionService {
         return iv;
     }
 
-    public SecretKeySpec generateKeyFromPassword(String password, byte[] salt) throws Exception {
-        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, ITERATIONS, KEY_SIZE);
-        SecretKeyFactory factory = SecretKeyFactory.getInstance(SECRET_KEY_ALGORITHM);
-        byte[] keyBytes = factory.generateSecret(spec).getEncoded();
+    public SecretKeySpec generateDataKey() {
+        byte[] keyBytes = new byte[KEY_SIZE / 8];
+        secureRandom.nextBytes(keyBytes);
         return new SecretKeySpec(keyBytes, "AES");
     }
 
+    public byte[] wrapKey(SecretKeySpec dataKey, SecretKeySpec wrappingKey) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(KEY_WRAP_ALGORITHM);
+        cipher.init(Cipher.WRAP_MODE, wrappingKey);
+        return cipher.wrap(dataKey);
+    }
+
+    public SecretKeySpec unwrapKey(byte[] wrappedKey, SecretKeySpec wrappingKey) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(KEY_WRAP_ALGORITHM);
+        cipher.init(Cipher.UNWRAP_MODE, wrappingKey);
+        return new SecretKeySpec(cipher.unwrap(wrappedKey, "AES", Cipher.SECRET_KEY).getEncoded(), "AES");
+    }
+
+    public SecretKeySpec deriveSubkey(SecretKeySpec key, String label) throws GeneralSecurityException {
+        Mac mac = Mac.getInstance(SUBKEY_ALGORITHM);
+        mac.init(new SecretKeySpec(key.getEncoded(), SUBKEY_ALGORITHM));
+        return new SecretKeySpec(mac.doFinal(label.getBytes(StandardCharsets.UTF_8)), SUBKEY_ALGORITHM);
+    }
+
+    public SecretKeySpec generateKeyFromPassword(String password, byte[] salt) throws Exception {
+        return generateKeyFromPassword(password, salt, DEFAULT_ITERATIONS);
+    }
+
+    public SecretKeySpec generateKeyFromPassword(String password, byte[] salt, int iterations) throws Exception {
+        try (VaultMetrics.Timer timer = VaultMetrics.start(Operation.KEY_DERIVATION)) {
+            timer.items(iterations);
+            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, KEY_SIZE);
+            SecretKeyFactory factory = SecretKeyFactory.getInstance(SECRET_KEY_ALGORITHM);
+            byte[] keyBytes = factory.generateSecret(spec).getEncoded();
+            return new SecretKeySpec(keyBytes, "AES");
+        }
+    }
+
     public String encrypt(String plainText, SecretKeySpec key, byte[] iv) throws Exception {
-        Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
-        cipher.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(iv));
-        byte[] encrypted = cipher.doFinal(plainText.getBytes("UTF-8"));
-        return Base64.getEncoder().encodeToString(encrypted);
+        long start = System.nanoTime();
+        byte[] encrypted = cipherEngine.encrypt(plainText.getBytes(StandardCharsets.UTF_8), key, iv);
+        String encoded = Base64.getEncoder().encodeToString(encrypted);
+        VaultMetrics.recordField(Operation.ENCRYPT, start, encrypted.length);
+        return encoded;
     }
 
     public String decrypt(String cipherTextBase64, SecretKeySpec key, byte[] iv) throws Exception {
-        Cipher cipher = Cipher.getInstance(CIPHER_TRANSFORMATION);
-        cipher.init(Cipher.DECRYPT_MODE, key, new IvParameterSpec(iv));
-        byte[] decoded = Base64.getDecoder().decode(cipherTextBase64);
-        byte[] decrypted = cipher.doFinal(decoded);
-        return new String(decrypted, "UTF-8");
+        byte[] buffer = Base64.getDecoder().decode(cipherTextBase64);
+        int length = decryptInPlace(buffer, key, iv);
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public static byte[] fieldAad(String id, String field) {
+        return (id + '\0' + field).getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String encryptField(String plainText, SecretKeySpec key, byte[] aad) throws GeneralSecurityException {
+        long start = System.nanoTime();
+        byte[] plain = plainText.getBytes(StandardCharsets.UTF_8);
+        byte[] nonce = new byte[NONCE_LENGTH];
+        secureRandom.nextBytes(nonce);
+        byte[] record = new byte[FIELD_HEADER.length + NONCE_LENGTH + plain.length + CipherEngine.TAG_LENGTH];
+        System.arraycopy(FIELD_HEADER, 0, record, 0, FIELD_HEADER.length);
+        System.arraycopy(nonce, 0, record, FIELD_HEADER.length, NONCE_LENGTH);
+        try {
+            cipherEngine.seal(plain, 0, plain.length, record, FIELD_HEADER.length + NONCE_LENGTH, key, nonce, aad);
+        } finally {
+            Arrays.fill(plain, (byte) 0);
+        }
+        String encoded = Base64.getEncoder().encodeToString(record);
+        VaultMetrics.recordField(Operation.ENCRYPT, start, record.length);
+        return encoded;
+    }
+
+    public String decryptField(String cipherTextBase64, SecretKeySpec key, byte[] legacyIv, byte[] aad) throws GeneralSecurityException {
+        byte[] buffer = Base64.getDecoder().decode(cipherTextBase64);
+        try {
+            int length = decryptFieldInPlace(buffer, key, legacyIv, aad);
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        } finally {
+            Arrays.fill(buffer, (byte) 0);
+        }
+    }
+
+    public int decryptFieldInPlace(byte[] buffer, SecretKeySpec key, byte[] legacyIv, byte[] aad) throws GeneralSecurityException {
+        long start = System.nanoTime();
+        int length;
+        if (legacyIv != null) {
+            length = decryptLegacyField(buffer, key, legacyIv, aad);
+        } else if (isSealed(buffer)) {
+            length = openField(buffer, key, aad);
+        } else {
+            throw new AEADBadTagException("pole nie jest zapieczetowane");
+        }
+        VaultMetrics.recordField(Operation.DECRYPT, start, buffer.length);
+        return length;
+    }
+
+    private int decryptLegacyField(byte[] buffer, SecretKeySpec key, byte[] legacyIv, byte[] aad) throws GeneralSecurityException {
+        if (!isSealed(buffer)) {
+            return cipherEngine.decrypt(buffer, 0, buffer.length, key, legacyIv);
+        }
+        byte[] legacy = buffer.length % BLOCK_SIZE == 0 ? buffer.clone() : null;
+        try {
+            return openField(buffer, key, aad);
+        } catch (AEADBadTagException e) {
+            if (legacy == null) {
+                throw e;
+            }
+            System.arraycopy(legacy, 0, buffer, 0, legacy.length);
+            return cipherEngine.decrypt(buffer, 0, buffer.length, key, legacyIv);
+        } finally {
+            if (legacy != null) {
+                Arrays.fill(legacy, (byte) 0);
+            }
+        }
+    }
+
+    private int openField(byte[] buffer, SecretKeySpec key, byte[] aad) throws GeneralSecurityException {
+        int offset = FIELD_HEADER.length + NONCE_LENGTH;
+        return cipherEngine.open(buffer, offset, buffer.length - offset, buffer, 0, key,
+                Arrays.copyOfRange(buffer, FIELD_HEADER.length, offset), aad);
+    }
+
+    public static int sealedLength(int plainLength) {
+        return NONCE_LENGTH + plainLength + CipherEngine.TAG_LENGTH;
+    }
+
+    public byte[] seal(byte[] plain, SecretKeySpec key, byte[] aad) throws GeneralSecurityException {
+        byte[] record = new byte[sealedLength(plain.length)];
+        byte[] nonce = new byte[NONCE_LENGTH];
+        secureRandom.nextBytes(nonce);
+        System.arraycopy(nonce, 0, record, 0, NONCE_LENGTH);
+        cipherEngine.seal(plain, 0, plain.length, record, NONCE_LENGTH, key, nonce, aad);
+        return record;
+    }
+
+    public byte[] open(byte[] record, SecretKeySpec key, byte[] aad) throws GeneralSecurityException {
+        if (record.length < sealedLength(0)) {
+            throw new AEADBadTagException("za krotki rekord");
+        }
+        byte[] plain = new byte[record.length - sealedLength(0)];
+        cipherEngine.open(record, NONCE_LENGTH, record.length - NONCE_LENGTH, plain, 0, key,
+                Arrays.copyOf(record, NONCE_LENGTH), aad);
+        return plain;
+    }
+
+    private static boolean isSealed(byte[] buffer) {
+        return buffer.length >= FIELD_HEADER.length + NONCE_LENGTH + CipherEngine.TAG_LENGTH
+                && buffer[0] == FIELD_HEADER[0] && buffer[1] == FIELD_HEADER[1] && buffer[2] == FIELD_HEADER[2];
+    }
+
+    public int decryptInPlace(byte[] buffer, SecretKeySpec key, byte[] iv) throws GeneralSecurityException {
+        long start = System.nanoTime();
+        int length = cipherEngine.decrypt(buffer, 0, buffer.length, key, iv);
+        VaultMetrics.recordField(Operation.DECRYPT, start, buffer.length);
+        return length;
+    }
+
+    public byte[] encrypt(byte[] plain, SecretKeySpec key, byte[] iv) throws GeneralSecurityException {
+        return cipherEngine.encrypt(plain, key, iv);
+    }
+
+    public byte[] decrypt(byte[] cipherText, SecretKeySpec key, byte[] iv) throws GeneralSecurityException {
+        return cipherEngine.decrypt(cipherText, key, iv);
+    }
+
+    public int encrypt(ByteBuffer in, ByteBuffer out, SecretKeySpec key, byte[] iv) throws GeneralSecurityException {
+        return cipherEngine.encrypt(in, out, key, iv);
+    }
+
+    public int decrypt(ByteBuffer in, ByteBuffer out, SecretKeySpec key, byte[] iv) throws GeneralSecurityException {
+        return cipherEngine.decrypt(in, out, key, iv);
+    }
+
+    public CipherEngine getCipherEngine() {
+        return cipherEngine;
     }
 }
\ No newline at end of file
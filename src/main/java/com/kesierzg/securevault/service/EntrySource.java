@@ -0,0 +1,11 @@
+package com.kesierzg.securevault.service;
+
+import com.kesierzg.securevault.model.PasswordEntry;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+@FunctionalInterface
+public interface EntrySource {
+
+    void forEach(Consumer<PasswordEntry> sink) throws IOException;
+}
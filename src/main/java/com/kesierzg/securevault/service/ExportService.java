@@ -1,42 +1,81 @@
 package com.kesierzg.securevault.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.*;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.kesierzg.securevault.model.PasswordEntry;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 public class ExportService {
 
+    private final JsonFactory jsonFactory = new JsonFactory();
+
     public void exportToBitwarden(List<PasswordEntry> entries, File file) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
+        try (JsonGenerator gen = createGenerator(file, true)) {
+            writeStart(gen);
+            for (PasswordEntry entry : entries) {
+                writeItem(gen, entry);
+            }
+            writeEnd(gen);
+        }
+    }
 
-        ObjectNode root = mapper.createObjectNode();
-        root.putArray("folders");
+    public void exportToBitwarden(VaultService vault, File file, boolean pretty) throws IOException {
+        try (JsonGenerator gen = createGenerator(file, pretty)) {
+            writeStart(gen);
+            try {
+                vault.forEachDecrypted(entry -> {
+                    try {
+                        writeItem(gen, entry);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writeEnd(gen);
+        }
+    }
 
-        ArrayNode items = mapper.createArrayNode();
+    private JsonGenerator createGenerator(File file, boolean pretty) throws IOException {
+        JsonGenerator gen = jsonFactory.createGenerator(file, JsonEncoding.UTF8);
+        if (pretty) {
+            gen.useDefaultPrettyPrinter();
+        }
+        return gen;
+    }
 
-        for (PasswordEntry entry : entries) {
-            ObjectNode item = mapper.createObjectNode();
-            item.put("type", 1);
-            item.put("name", entry.getWebsite());
+    private void writeStart(JsonGenerator gen) throws IOException {
+        gen.writeStartObject();
+        gen.writeArrayFieldStart("folders");
+        gen.writeEndArray();
+        gen.writeArrayFieldStart("items");
+    }
 
-            ObjectNode login = mapper.createObjectNode();
-            login.put("username", entry.getUsername());
-            login.put("password", entry.getPassword());
+    private void writeItem(JsonGenerator gen, PasswordEntry entry) throws IOException {
+        gen.writeStartObject();
+        gen.writeNumberField("type", 1);
+        gen.writeStringField("name", entry.getWebsite());
 
-            ArrayNode uris = mapper.createArrayNode();
-            uris.add(entry.getWebsite());
-            login.set("uris", uris);
+        gen.writeObjectFieldStart("login");
+        gen.writeStringField("username", entry.getUsername());
+        gen.writeStringField("password", entry.getPassword());
+        gen.writeArrayFieldStart("uris");
+        gen.writeString(entry.getWebsite());
+        gen.writeEndArray();
+        gen.writeEndObject();
 
-            item.set("login", login);
-            item.put("notes", "");
-            item.put("favorite", false);
+        gen.writeStringField("notes", "");
+        gen.writeBooleanField("favorite", false);
+        gen.writeEndObject();
+    }
 
-            items.add(item);
-        }
-        root.set("items", items);
-        mapper.writerWithDefaultPrettyPrinter().writeValue(file, root);
+    private void writeEnd(JsonGenerator gen) throws IOException {
+        gen.writeEndArray();
+        gen.writeEndObject();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,79 @@
+package com.kesierzg.securevault.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+class FingerprintIndex {
+
+    static final String KEY_LABEL = "securevault-fingerprint-v1";
+    private static final int FINGERPRINT_LENGTH = 16;
+
+    record Fingerprint(String identity, String secret) {
+    }
+
+    private final SecretKeySpec key;
+    private final Map<String, List<String>> idsByIdentity = new HashMap<>();
+    private final Map<String, Fingerprint> byId = new HashMap<>();
+
+    FingerprintIndex(SecretKeySpec key) {
+        this.key = key;
+    }
+
+    Fingerprint fingerprint(String website, String username, String password) {
+        try {
+            Mac mac = Mac.getInstance(key.getAlgorithm());
+            mac.init(key);
+            mac.update(VaultService.normalize(website).getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            String identity = encode(mac.doFinal((username == null ? "" : username).getBytes(StandardCharsets.UTF_8)));
+            mac.update((byte) 1);
+            String secret = encode(mac.doFinal((password == null ? "" : password).getBytes(StandardCharsets.UTF_8)));
+            return new Fingerprint(identity, secret);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("nie udao sie policzyc odcisku :(", e);
+        }
+    }
+
+    List<String> idsWithIdentity(String identity) {
+        return idsByIdentity.getOrDefault(identity, List.of());
+    }
+
+    String secretOf(String id) {
+        Fingerprint fingerprint = byId.get(id);
+        return fingerprint != null ? fingerprint.secret() : null;
+    }
+
+    void put(String id, Fingerprint fingerprint) {
+        remove(id);
+        byId.put(id, fingerprint);
+        idsByIdentity.computeIfAbsent(fingerprint.identity(), k -> new ArrayList<>(1)).add(id);
+    }
+
+    void remove(String id) {
+        Fingerprint removed = byId.remove(id);
+        if (removed != null) {
+            List<String> ids = idsByIdentity.get(removed.identity());
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                idsByIdentity.remove(removed.identity());
+            }
+        }
+    }
+
+    void clear() {
+        idsByIdentity.clear();
+        byId.clear();
+    }
+
+    private static String encode(byte[] mac) {
+        return Base64.getEncoder().withoutPadding().encodeToString(Arrays.copyOf(mac, FINGERPRINT_LENGTH));
+    }
+}
@@ -1,32 +1,85 @@
 package com.kesierzg.securevault.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.kesierzg.securevault.model.PasswordEntry;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class ImportService {
 
+    private static final int LOGIN_TYPE = 1;
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
     public List<PasswordEntry> importFromBitwarden(File file) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode root = mapper.readTree(file);
         List<PasswordEntry> result = new ArrayList<>();
+        importFromBitwarden(file, result::add);
+        return result;
+    }
 
-        JsonNode items = root.get("items");
-        if (items != null && items.isArray()) {
-            for (JsonNode item : items) {
-                if (item.get("type").asInt() == 1 && item.has("login")) {
-                    String site = item.get("name").asText("");
-                    String username = item.get("login").get("username").asText("");
-                    String password = item.get("login").get("password").asText("");
+    public int importFromBitwarden(File file, Consumer<PasswordEntry> sink) throws IOException {
+        int imported = 0;
+        try (JsonParser parser = jsonFactory.createParser(file)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("to nie jest eksport bitwardena");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("items".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        PasswordEntry entry = readItem(parser);
+                        if (entry != null) {
+                            sink.accept(entry);
+                            imported++;
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return imported;
+    }
 
-                    result.add(new PasswordEntry(site, username, password));
+    private PasswordEntry readItem(JsonParser parser) throws IOException {
+        int type = -1;
+        String site = "";
+        String username = null;
+        String password = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("type".equals(field)) {
+                type = parser.getValueAsInt(-1);
+            } else if ("name".equals(field)) {
+                site = parser.getValueAsString("");
+            } else if ("login".equals(field) && value == JsonToken.START_OBJECT && type <= LOGIN_TYPE) {
+                username = "";
+                password = "";
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String loginField = parser.currentName();
+                    parser.nextToken();
+                    if ("username".equals(loginField)) {
+                        username = parser.getValueAsString("");
+                    } else if ("password".equals(loginField)) {
+                        password = parser.getValueAsString("");
+                    } else {
+                        parser.skipChildren();
+                    }
                 }
+            } else {
+                parser.skipChildren();
             }
         }
-        return result;
+        if (type != LOGIN_TYPE || username == null) {
+            return null;
+        }
+        return new PasswordEntry(site, username, password);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,27 @@
+package com.kesierzg.securevault.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.kesierzg.securevault.model.NoteEntry;
+import com.kesierzg.securevault.model.PasswordEntry;
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+class JournalRecord {
+
+    enum Op { ADD_ENTRY, ADD_ENTRIES, EDIT_ENTRY, REMOVE_ENTRY, ADD_NOTE, EDIT_NOTE, REMOVE_NOTE, CLEAR }
+
+    public Op op;
+    public String id;
+    public String key;
+    public PasswordEntry entry;
+    public List<PasswordEntry> entries;
+    public NoteEntry note;
+
+    JournalRecord() {}
+
+    JournalRecord(Op op) {
+        this.op = op;
+    }
+}
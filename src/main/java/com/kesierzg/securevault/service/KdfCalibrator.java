@@ -0,0 +1,39 @@
+package com.kesierzg.securevault.service;
+
+import java.time.Duration;
+
+public class KdfCalibrator {
+
+    public static final int MIN_ITERATIONS = EncryptionService.DEFAULT_ITERATIONS;
+    public static final int MAX_ITERATIONS = 10_000_000;
+    private static final int PROBE_ITERATIONS = 20_000;
+    private static final int PROBE_ROUNDS = 3;
+    private static final int ROUNDING = 1000;
+
+    private final EncryptionService encryptionService;
+
+    public KdfCalibrator() {
+        this(new EncryptionService());
+    }
+
+    public KdfCalibrator(EncryptionService encryptionService) {
+        this.encryptionService = encryptionService;
+    }
+
+    public int calibrate(Duration targetUnlockTime) {
+        byte[] salt = encryptionService.generateSalt();
+        long fastest = Long.MAX_VALUE;
+        try {
+            for (int i = 0; i < PROBE_ROUNDS; i++) {
+                long start = System.nanoTime();
+                encryptionService.generateKeyFromPassword("kalibracja", salt, PROBE_ITERATIONS);
+                fastest = Math.min(fastest, System.nanoTime() - start);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("nie udao sie skalibrowac KDF :(", e);
+        }
+        double iterations = (double) PROBE_ITERATIONS * targetUnlockTime.toNanos() / Math.max(fastest, 1);
+        long rounded = (long) Math.ceil(iterations / ROUNDING) * ROUNDING;
+        return (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, rounded));
+    }
+}
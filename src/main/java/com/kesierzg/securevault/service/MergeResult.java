@@ -0,0 +1,40 @@
+package com.kesierzg.securevault.service;
+
+public class MergeResult {
+
+    private int added;
+    private int identical;
+    private int conflicts;
+    private int overwritten;
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getIdentical() {
+        return identical;
+    }
+
+    public int getConflicts() {
+        return conflicts;
+    }
+
+    public int getOverwritten() {
+        return overwritten;
+    }
+
+    void added() {
+        added++;
+    }
+
+    void identical() {
+        identical++;
+    }
+
+    void conflict(boolean overwrite) {
+        conflicts++;
+        if (overwrite) {
+            overwritten++;
+        }
+    }
+}
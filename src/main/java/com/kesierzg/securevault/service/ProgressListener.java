@@ -0,0 +1,9 @@
+package com.kesierzg.securevault.service;
+
+@FunctionalInterface
+public interface ProgressListener {
+
+    ProgressListener NONE = (done, total) -> {};
+
+    void onProgress(long done, long total);
+}
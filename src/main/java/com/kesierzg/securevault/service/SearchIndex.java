@@ -0,0 +1,190 @@
+package com.kesierzg.securevault.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+public class SearchIndex {
+
+    private static final int GRAM = 3;
+    private static final int MIN_DEAD_FOR_COMPACTION = 1024;
+
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<String> ids = new ArrayList<>();
+    private final List<String[]> documents = new ArrayList<>();
+    private final NavigableMap<String, Postings> fieldStarts = new TreeMap<>();
+    private final NavigableMap<String, Postings> wordStarts = new TreeMap<>();
+    private final Map<String, Postings> grams = new HashMap<>();
+    private int dead;
+
+    public void put(String id, String... fields) {
+        remove(id);
+        String[] normalized = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            normalized[i] = normalize(fields[i]);
+        }
+        int ordinal = ids.size();
+        ids.add(id);
+        documents.add(normalized);
+        ordinals.put(id, ordinal);
+        index(ordinal, normalized);
+    }
+
+    public void remove(String id) {
+        Integer ordinal = ordinals.remove(id);
+        if (ordinal == null) {
+            return;
+        }
+        documents.set(ordinal, null);
+        dead++;
+        if (dead >= MIN_DEAD_FOR_COMPACTION && dead > ordinals.size()) {
+            compact();
+        }
+    }
+
+    public void clear() {
+        ordinals.clear();
+        ids.clear();
+        documents.clear();
+        fieldStarts.clear();
+        wordStarts.clear();
+        grams.clear();
+        dead = 0;
+    }
+
+    public int size() {
+        return ordinals.size();
+    }
+
+    public List<String> search(String query, int limit) {
+        String q = normalize(query);
+        if (q.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        Set<Integer> found = new LinkedHashSet<>();
+        collectPrefixed(fieldStarts, q, limit, found);
+        collectPrefixed(wordStarts, q, limit, found);
+        if (found.size() < limit && q.length() >= GRAM) {
+            collectSubstrings(q, limit, found);
+        }
+        List<String> result = new ArrayList<>(found.size());
+        for (int ordinal : found) {
+            result.add(ids.get(ordinal));
+        }
+        return result;
+    }
+
+    private void collectPrefixed(NavigableMap<String, Postings> index, String q, int limit, Set<Integer> found) {
+        if (found.size() >= limit) {
+            return;
+        }
+        for (Postings postings : index.subMap(q, true, q + Character.MAX_VALUE, false).values()) {
+            for (int i = 0; i < postings.size; i++) {
+                int ordinal = postings.ordinals[i];
+                if (documents.get(ordinal) != null && found.add(ordinal) && found.size() >= limit) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void collectSubstrings(String q, int limit, Set<Integer> found) {
+        Postings rarest = null;
+        for (int i = 0; i + GRAM <= q.length(); i++) {
+            Postings postings = grams.get(q.substring(i, i + GRAM));
+            if (postings == null) {
+                return;
+            }
+            if (rarest == null || postings.size < rarest.size) {
+                rarest = postings;
+            }
+        }
+        List<Integer> matches = new ArrayList<>();
+        for (int i = 0; i < rarest.size && found.size() + matches.size() < limit; i++) {
+            int ordinal = rarest.ordinals[i];
+            String[] fields = documents.get(ordinal);
+            if (fields == null || found.contains(ordinal)) {
+                continue;
+            }
+            for (String field : fields) {
+                if (field.contains(q)) {
+                    matches.add(ordinal);
+                    break;
+                }
+            }
+        }
+        matches.sort(Comparator.comparingInt(ordinal -> shortestField(documents.get(ordinal))));
+        found.addAll(matches);
+    }
+
+    private void index(int ordinal, String[] fields) {
+        for (String field : fields) {
+            add(fieldStarts, field, ordinal);
+            for (int i = 1; i < field.length(); i++) {
+                if (Character.isLetterOrDigit(field.charAt(i)) && !Character.isLetterOrDigit(field.charAt(i - 1))) {
+                    add(wordStarts, field.substring(i), ordinal);
+                }
+            }
+            for (int i = 0; i + GRAM <= field.length(); i++) {
+                add(grams, field.substring(i, i + GRAM), ordinal);
+            }
+        }
+    }
+
+    private void compact() {
+        List<String> liveIds = new ArrayList<>(ordinals.size());
+        List<String[]> liveDocuments = new ArrayList<>(ordinals.size());
+        for (int i = 0; i < ids.size(); i++) {
+            if (documents.get(i) != null) {
+                liveIds.add(ids.get(i));
+                liveDocuments.add(documents.get(i));
+            }
+        }
+        clear();
+        for (int i = 0; i < liveIds.size(); i++) {
+            ids.add(liveIds.get(i));
+            documents.add(liveDocuments.get(i));
+            ordinals.put(liveIds.get(i), i);
+            index(i, liveDocuments.get(i));
+        }
+    }
+
+    private static int shortestField(String[] fields) {
+        int shortest = Integer.MAX_VALUE;
+        for (String field : fields) {
+            shortest = Math.min(shortest, field.length());
+        }
+        return shortest;
+    }
+
+    private static void add(Map<String, Postings> index, String key, int ordinal) {
+        index.computeIfAbsent(key, k -> new Postings()).add(ordinal);
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static class Postings {
+        int[] ordinals = new int[2];
+        int size;
+
+        void add(int ordinal) {
+            if (size > 0 && ordinals[size - 1] == ordinal) {
+                return;
+            }
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+            }
+            ordinals[size++] = ordinal;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.kesierzg.securevault.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+class SecretPool {
+
+    private static final int MIN_SHIFT = 4;
+    private static final int MAX_SHIFT = 12;
+    private static final int MAX_POOLED_PER_CLASS = 256;
+
+    private final List<ArrayDeque<char[]>> free = new ArrayList<>(MAX_SHIFT - MIN_SHIFT + 1);
+
+    SecretPool() {
+        for (int i = MIN_SHIFT; i <= MAX_SHIFT; i++) {
+            free.add(new ArrayDeque<>());
+        }
+    }
+
+    synchronized char[] acquire(int length) {
+        int sizeClass = sizeClassOf(length);
+        if (sizeClass < 0) {
+            return new char[length];
+        }
+        char[] chars = free.get(sizeClass).poll();
+        return chars != null ? chars : new char[1 << (sizeClass + MIN_SHIFT)];
+    }
+
+    synchronized void release(char[] chars) {
+        Arrays.fill(chars, '\0');
+        int sizeClass = sizeClassOf(chars.length);
+        if (sizeClass >= 0 && chars.length == 1 << (sizeClass + MIN_SHIFT)
+                && free.get(sizeClass).size() < MAX_POOLED_PER_CLASS) {
+            free.get(sizeClass).push(chars);
+        }
+    }
+
+    synchronized void clear() {
+        for (ArrayDeque<char[]> deque : free) {
+            deque.clear();
+        }
+    }
+
+    private static int sizeClassOf(int length) {
+        int shift = Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(length, 1) - 1));
+        return shift > MAX_SHIFT ? -1 : shift - MIN_SHIFT;
+    }
+}
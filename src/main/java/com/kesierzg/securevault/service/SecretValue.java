@@ -0,0 +1,67 @@
+package com.kesierzg.securevault.service;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public final class SecretValue {
+
+    private final SecretPool pool;
+    private final int length;
+    private char[] chars;
+
+    private SecretValue(char[] chars, int length, SecretPool pool) {
+        this.chars = chars;
+        this.length = length;
+        this.pool = pool;
+    }
+
+    static SecretValue decode(byte[] utf8, int length, SecretPool pool) {
+        char[] chars = pool.acquire(length);
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CharBuffer out = CharBuffer.wrap(chars);
+        decoder.decode(ByteBuffer.wrap(utf8, 0, length), out, true);
+        decoder.flush(out);
+        return new SecretValue(chars, out.position(), pool);
+    }
+
+    public synchronized int length() {
+        return chars != null ? length : 0;
+    }
+
+    public synchronized char charAt(int index) {
+        if (chars == null || index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return chars[index];
+    }
+
+    public synchronized char[] toCharArray() {
+        return chars != null ? Arrays.copyOf(chars, length) : new char[0];
+    }
+
+    public synchronized String reveal() {
+        return chars != null ? new String(chars, 0, length) : null;
+    }
+
+    public synchronized boolean isWiped() {
+        return chars == null;
+    }
+
+    synchronized void wipe() {
+        if (chars != null) {
+            pool.release(chars);
+            chars = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "******";
+    }
+}
@@ -0,0 +1,393 @@
+package com.kesierzg.securevault.service;
+
+import com.kesierzg.securevault.model.NoteEntry;
+import com.kesierzg.securevault.model.PasswordEntry;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+class SegmentedVaultFormat {
+
+    static final int MAGIC = 0x53564D46;
+    static final int SEGMENT_COUNT = 64;
+    static final String MANIFEST_KEY_LABEL = "securevault-manifest-v1";
+    private static final short VERSION = 1;
+    private static final int MAC_LENGTH = 32;
+
+    record Segment(List<PasswordEntry> entries, List<NoteEntry> notes) {
+    }
+
+    private final File file;
+    private final long[] segmentGenerations;
+    private final long[] sealedGenerations;
+    private final int[] checksums;
+    private byte[] unverifiedManifest;
+    private final Map<Integer, Segment> staged = new HashMap<>();
+    private final Map<Integer, SegmentedVaultFormat> copies = new HashMap<>();
+
+    SegmentedVaultFormat(File file) {
+        this(file, new long[SEGMENT_COUNT], new long[SEGMENT_COUNT], new int[SEGMENT_COUNT], null);
+    }
+
+    private SegmentedVaultFormat(File file, long[] segmentGenerations, long[] sealedGenerations, int[] checksums,
+                                 byte[] unverifiedManifest) {
+        this.file = file;
+        this.segmentGenerations = segmentGenerations;
+        this.sealedGenerations = sealedGenerations;
+        this.checksums = checksums;
+        this.unverifiedManifest = unverifiedManifest;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    int checksum(int index) {
+        return checksums[index];
+    }
+
+    Segment readSegment(int index, EncryptionService encryptionService, SecretKeySpec key) throws IOException {
+        if (unverifiedManifest != null) {
+            throw new IllegalStateException("manifest nie zostal sprawdzony");
+        }
+        if (segmentGenerations[index] == 0) {
+            return new Segment(new ArrayList<>(), new ArrayList<>());
+        }
+        return readSegment(segmentDirectory(file).resolve(segmentName(index, segmentGenerations[index])), checksums[index],
+                encryptionService, key, segmentAad(index, sealedGenerations[index]));
+    }
+
+    static byte[] segmentAad(int index, long generation) {
+        return ByteBuffer.allocate(16).putInt(MAGIC).putInt(index).putLong(generation).array();
+    }
+
+    void verify(EncryptionService encryptionService, SecretKeySpec key) throws IOException {
+        byte[] manifest = unverifiedManifest;
+        if (manifest == null) {
+            return;
+        }
+        byte[] expected = manifestMac(manifest, manifest.length - MAC_LENGTH, encryptionService, key);
+        if (!MessageDigest.isEqual(expected, Arrays.copyOfRange(manifest, manifest.length - MAC_LENGTH, manifest.length))) {
+            throw new IOException("podpis manifestu sie nie zgadza");
+        }
+        unverifiedManifest = null;
+    }
+
+    private static byte[] manifestMac(byte[] manifest, int length, EncryptionService encryptionService,
+                                      SecretKeySpec key) throws IOException {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(encryptionService.deriveSubkey(key, MANIFEST_KEY_LABEL));
+            mac.update(manifest, 0, length);
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("nie udao sie policzyc podpisu manifestu", e);
+        }
+    }
+
+    static int segmentOf(String id) {
+        int h = id.hashCode();
+        h ^= h >>> 16;
+        return (h & 0x7fffffff) % SEGMENT_COUNT;
+    }
+
+    static boolean isManifest(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            byte[] magic = in.readNBytes(4);
+            return magic.length == 4 && ByteBuffer.wrap(magic).getInt() == MAGIC;
+        }
+    }
+
+    static Path segmentDirectory(File file) {
+        return file.toPath().resolveSibling(file.getName() + ".segments");
+    }
+
+    static SegmentedVaultFormat open(File file, EncryptedVaultData header) throws IOException {
+        byte[] manifest = Files.readAllBytes(file.toPath());
+        if (manifest.length < 6 + MAC_LENGTH || ByteBuffer.wrap(manifest).getInt() != MAGIC) {
+            throw new IOException("to nie jest manifest bazy");
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(manifest, 0, manifest.length - MAC_LENGTH);
+        buffer.position(4);
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("nieznana wersja manifestu: " + version);
+        }
+        header.iterations = buffer.getInt();
+        header.generation = buffer.getLong();
+        header.salt = Base64.getEncoder().encodeToString(readShortBytes(buffer));
+        header.iv = Base64.getEncoder().encodeToString(readShortBytes(buffer));
+        byte[] wrappedKey = readShortBytes(buffer);
+        header.wrappedKey = wrappedKey.length > 0 ? Base64.getEncoder().encodeToString(wrappedKey) : null;
+        int count = buffer.getInt();
+        if (count != SEGMENT_COUNT) {
+            throw new IOException("nieznana liczba segmentow: " + count);
+        }
+        long[] generations = new long[count];
+        long[] sealedGenerations = new long[count];
+        int[] checksums = new int[count];
+        for (int i = 0; i < count; i++) {
+            generations[i] = buffer.getLong();
+            sealedGenerations[i] = buffer.getLong();
+            checksums[i] = buffer.getInt();
+        }
+        return new SegmentedVaultFormat(file, generations, sealedGenerations, checksums, manifest);
+    }
+
+    void readSegments(EncryptedVaultData data, EncryptionService encryptionService, SecretKeySpec key) throws IOException {
+        Segment[] segments = new Segment[SEGMENT_COUNT];
+        try {
+            IntStream.range(0, SEGMENT_COUNT).parallel().forEach(i -> {
+                try {
+                    segments[i] = readSegment(i, encryptionService, key);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        List<PasswordEntry> entries = new ArrayList<>();
+        List<NoteEntry> notes = new ArrayList<>();
+        for (Segment segment : segments) {
+            entries.addAll(segment.entries());
+            notes.addAll(segment.notes());
+        }
+        data.entries = entries;
+        data.notes = notes;
+    }
+
+    synchronized void stage(Map<Integer, Segment> changed) {
+        staged.putAll(changed);
+    }
+
+    synchronized void stageCopy(int index, SegmentedVaultFormat source) {
+        copies.put(index, source);
+    }
+
+    void write(EncryptedVaultData header, EncryptionService encryptionService, SecretKeySpec key) throws IOException {
+        Map<Integer, Segment> toWrite;
+        Map<Integer, SegmentedVaultFormat> toCopy;
+        synchronized (this) {
+            toWrite = new HashMap<>(staged);
+            toCopy = new HashMap<>(copies);
+        }
+        Path directory = segmentDirectory(file);
+        Files.createDirectories(directory);
+        long[] generations = segmentGenerations.clone();
+        long[] newSealedGenerations = sealedGenerations.clone();
+        int[] newChecksums = checksums.clone();
+        for (Map.Entry<Integer, Segment> entry : toWrite.entrySet()) {
+            int index = entry.getKey();
+            newChecksums[index] = writeSegment(directory.resolve(segmentName(index, header.generation)), entry.getValue(),
+                    encryptionService, key, segmentAad(index, header.generation));
+            generations[index] = header.generation;
+            newSealedGenerations[index] = header.generation;
+        }
+        for (Map.Entry<Integer, SegmentedVaultFormat> entry : toCopy.entrySet()) {
+            int index = entry.getKey();
+            SegmentedVaultFormat source = entry.getValue();
+            long sourceGeneration = source.segmentGenerations[index];
+            if (sourceGeneration == 0) {
+                generations[index] = 0;
+                newSealedGenerations[index] = 0;
+                newChecksums[index] = 0;
+                continue;
+            }
+            byte[] bytes = Files.readAllBytes(segmentDirectory(source.file).resolve(segmentName(index, sourceGeneration)));
+            try (FileOutputStream fileOut = new FileOutputStream(directory.resolve(segmentName(index, header.generation)).toFile())) {
+                fileOut.write(bytes);
+                fileOut.getFD().sync();
+            }
+            newChecksums[index] = source.checksums[index];
+            generations[index] = header.generation;
+            newSealedGenerations[index] = source.sealedGenerations[index];
+        }
+        writeManifest(header, generations, newSealedGenerations, newChecksums, encryptionService, key);
+
+        System.arraycopy(generations, 0, segmentGenerations, 0, SEGMENT_COUNT);
+        System.arraycopy(newSealedGenerations, 0, sealedGenerations, 0, SEGMENT_COUNT);
+        System.arraycopy(newChecksums, 0, checksums, 0, SEGMENT_COUNT);
+        synchronized (this) {
+            for (Map.Entry<Integer, Segment> entry : toWrite.entrySet()) {
+                staged.remove(entry.getKey(), entry.getValue());
+            }
+            for (Map.Entry<Integer, SegmentedVaultFormat> entry : toCopy.entrySet()) {
+                copies.remove(entry.getKey(), entry.getValue());
+            }
+        }
+        deleteUnreferenced(directory);
+    }
+
+    private static int writeSegment(Path path, Segment segment, EncryptionService encryptionService,
+                                    SecretKeySpec key, byte[] aad) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        Base64.Decoder base64 = Base64.getDecoder();
+        out.writeInt(segment.entries().size());
+        out.writeInt(segment.notes().size());
+        for (PasswordEntry entry : segment.entries()) {
+            writeBytes(out, entry.getId().getBytes(StandardCharsets.UTF_8));
+            out.writeLong(entry.getRevision());
+            out.writeBoolean(entry.isDeleted());
+            writeBytes(out, entry.getWebsite().getBytes(StandardCharsets.UTF_8));
+            writeBytes(out, base64.decode(entry.getUsername()));
+            writeBytes(out, base64.decode(entry.getPassword()));
+        }
+        for (NoteEntry note : segment.notes()) {
+            writeBytes(out, note.getId().getBytes(StandardCharsets.UTF_8));
+            out.writeLong(note.getRevision());
+            out.writeBoolean(note.isDeleted());
+            writeBytes(out, note.getTitle().getBytes(StandardCharsets.UTF_8));
+            writeBytes(out, note.getContent().getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] sealed;
+        try {
+            sealed = encryptionService.seal(bytes.toByteArray(), key, aad);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("nie udao sie zaszyfrowac segmentu", e);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(sealed);
+        try (FileOutputStream fileOut = new FileOutputStream(path.toFile())) {
+            fileOut.write(sealed);
+            fileOut.getFD().sync();
+        }
+        return (int) crc.getValue();
+    }
+
+    private static Segment readSegment(Path path, int checksum, EncryptionService encryptionService,
+                                       SecretKeySpec key, byte[] aad) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("segment jest uszkodzony: " + path.getFileName());
+        }
+        byte[] plain;
+        try {
+            plain = encryptionService.open(bytes, key, aad);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("nie udao sie rozszyfrowac segmentu: " + path.getFileName(), e);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(plain);
+        Base64.Encoder base64 = Base64.getEncoder();
+        int entryCount = buffer.getInt();
+        int noteCount = buffer.getInt();
+        List<PasswordEntry> entries = new ArrayList<>(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            String id = readString(buffer);
+            long revision = buffer.getLong();
+            boolean deleted = buffer.get() != 0;
+            entries.add(new PasswordEntry(id, readString(buffer),
+                    base64.encodeToString(readBytes(buffer)), base64.encodeToString(readBytes(buffer)), revision, deleted));
+        }
+        List<NoteEntry> notes = new ArrayList<>(noteCount);
+        for (int i = 0; i < noteCount; i++) {
+            String id = readString(buffer);
+            long revision = buffer.getLong();
+            boolean deleted = buffer.get() != 0;
+            notes.add(new NoteEntry(id, readString(buffer), readString(buffer), revision, deleted));
+        }
+        return new Segment(entries, notes);
+    }
+
+    private void writeManifest(EncryptedVaultData header, long[] generations, long[] sealedGenerations, int[] checksums,
+                               EncryptionService encryptionService, SecretKeySpec key) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] wrappedKey = header.getWrappedKeyBytes();
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeInt(header.iterations);
+        out.writeLong(header.generation);
+        writeShortBytes(out, header.getSaltBytes());
+        writeShortBytes(out, header.getIvBytes());
+        writeShortBytes(out, wrappedKey != null ? wrappedKey : new byte[0]);
+        out.writeInt(SEGMENT_COUNT);
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            out.writeLong(generations[i]);
+            out.writeLong(sealedGenerations[i]);
+            out.writeInt(checksums[i]);
+        }
+        out.write(manifestMac(bytes.toByteArray(), bytes.size(), encryptionService, key));
+
+        Path target = file.toPath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(tmp.toFile())) {
+            bytes.writeTo(fileOut);
+            fileOut.getFD().sync();
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteUnreferenced(Path directory) throws IOException {
+        Set<String> referenced = new HashSet<>();
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            if (segmentGenerations[i] != 0) {
+                referenced.add(segmentName(i, segmentGenerations[i]));
+            }
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.bin")) {
+            for (Path path : files) {
+                if (!referenced.contains(path.getFileName().toString())) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private static String segmentName(int index, long generation) {
+        return String.format("segment-%02d-%d.bin", index, generation);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        return new String(readBytes(buffer), StandardCharsets.UTF_8);
+    }
+
+    private static void writeShortBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeByte(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readShortBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.get() & 0xFF];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
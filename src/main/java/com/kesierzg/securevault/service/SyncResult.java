@@ -0,0 +1,56 @@
+package com.kesierzg.securevault.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class SyncResult {
+
+    private int pulled;
+    private int pushed;
+    private int conflicts;
+    private int segmentsCompared;
+    private final Map<Integer, SegmentedVaultFormat.Segment> localUpdates = new HashMap<>();
+
+    public int getPulled() {
+        return pulled;
+    }
+
+    public int getPushed() {
+        return pushed;
+    }
+
+    public int getConflicts() {
+        return conflicts;
+    }
+
+    public int getSegmentsCompared() {
+        return segmentsCompared;
+    }
+
+    public boolean isLocalChanged() {
+        return !localUpdates.isEmpty();
+    }
+
+    Map<Integer, SegmentedVaultFormat.Segment> getLocalUpdates() {
+        return localUpdates;
+    }
+
+    synchronized void pulled() {
+        pulled++;
+    }
+
+    synchronized void pushed() {
+        pushed++;
+    }
+
+    synchronized void conflict() {
+        conflicts++;
+    }
+
+    synchronized void compared(int index, SegmentedVaultFormat.Segment localUpdate) {
+        segmentsCompared++;
+        if (localUpdate != null) {
+            localUpdates.put(index, localUpdate);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.kesierzg.securevault.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class VaultChange {
+
+    private final List<String> addedEntries = new ArrayList<>();
+    private final List<String> updatedEntries = new ArrayList<>();
+    private final List<String> removedEntries = new ArrayList<>();
+    private boolean entriesCleared;
+    private boolean notesChanged;
+
+    public List<String> getAddedEntries() {
+        return addedEntries;
+    }
+
+    public List<String> getUpdatedEntries() {
+        return updatedEntries;
+    }
+
+    public List<String> getRemovedEntries() {
+        return removedEntries;
+    }
+
+    public boolean isEntriesCleared() {
+        return entriesCleared;
+    }
+
+    public boolean isNotesChanged() {
+        return notesChanged;
+    }
+
+    boolean isEmpty() {
+        return addedEntries.isEmpty() && updatedEntries.isEmpty() && removedEntries.isEmpty()
+                && !entriesCleared && !notesChanged;
+    }
+
+    void entryPut(String id, boolean added) {
+        (added ? addedEntries : updatedEntries).add(id);
+    }
+
+    void entryRemoved(String id) {
+        updatedEntries.remove(id);
+        if (!addedEntries.remove(id)) {
+            removedEntries.add(id);
+        }
+    }
+
+    void cleared() {
+        entriesCleared = true;
+        addedEntries.clear();
+        updatedEntries.clear();
+        removedEntries.clear();
+    }
+
+    void notesChanged() {
+        notesChanged = true;
+    }
+}
@@ -0,0 +1,7 @@
+package com.kesierzg.securevault.service;
+
+public enum VaultFormat {
+    JSON,
+    SEGMENTED,
+    COMPRESSED
+}
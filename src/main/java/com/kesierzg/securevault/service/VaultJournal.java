@@ -0,0 +1,158 @@
+package com.kesierzg.securevault.service;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+class VaultJournal implements Closeable {
+
+    private static final int MAGIC = 0x53564A31;
+    private static final int HEADER_SIZE = 12;
+    private static final int FRAME_OVERHEAD = 8;
+
+    private final Path path;
+    private final long generation;
+    private final FileChannel channel;
+    private long size;
+
+    private VaultJournal(Path path, long generation, long validLength) throws IOException {
+        this.path = path;
+        this.generation = generation;
+        this.channel = FileChannel.open(path, StandardOpenOption.WRITE);
+        this.channel.truncate(validLength);
+        this.channel.position(validLength);
+        this.size = validLength;
+    }
+
+    static VaultJournal create(Path path, long generation) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putLong(generation).flip();
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            out.force(true);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return new VaultJournal(path, generation, HEADER_SIZE);
+    }
+
+    static VaultJournal open(Path path, State state) throws IOException {
+        return new VaultJournal(path, state.generation, state.validLength);
+    }
+
+    static byte[] frameAad(long generation, int length) {
+        return ByteBuffer.allocate(HEADER_SIZE + 4).putInt(MAGIC).putLong(generation).putInt(length).array();
+    }
+
+    static State replay(Path path, long minGeneration, BiConsumer<byte[], byte[]> consumer) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(path);
+             DataInputStream data = new DataInputStream(new BufferedInputStream(in))) {
+            long generation;
+            try {
+                if (data.readInt() != MAGIC) {
+                    return null;
+                }
+                generation = data.readLong();
+            } catch (EOFException e) {
+                return null;
+            }
+            if (generation < minGeneration) {
+                return null;
+            }
+            long fileSize = Files.size(path);
+            long validLength = HEADER_SIZE;
+            CRC32 crc = new CRC32();
+            while (validLength + FRAME_OVERHEAD <= fileSize) {
+                int length = data.readInt();
+                if (length < 0 || validLength + FRAME_OVERHEAD + length > fileSize) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                data.readFully(payload);
+                int checksum = data.readInt();
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                consumer.accept(payload, frameAad(generation, length));
+                validLength += FRAME_OVERHEAD + length;
+            }
+            return new State(generation, validLength);
+        }
+    }
+
+    void append(List<byte[]> payloads) throws IOException {
+        int total = 0;
+        for (byte[] payload : payloads) {
+            total += FRAME_OVERHEAD + payload.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(total);
+        CRC32 crc = new CRC32();
+        for (byte[] payload : payloads) {
+            crc.reset();
+            crc.update(payload);
+            buffer.putInt(payload.length).put(payload).putInt((int) crc.getValue());
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            channel.truncate(size);
+            channel.position(size);
+            throw e;
+        }
+        size += total;
+    }
+
+    long size() {
+        return size;
+    }
+
+    long getGeneration() {
+        return generation;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    static class State {
+        final long generation;
+        final long validLength;
+
+        State(long generation, long validLength) {
+            this.generation = generation;
+            this.validLength = validLength;
+        }
+
+        long frameBytes() {
+            return validLength - HEADER_SIZE;
+        }
+    }
+}
@@ -0,0 +1,7 @@
+package com.kesierzg.securevault.service;
+
+@FunctionalInterface
+public interface VaultListener {
+
+    void vaultChanged(VaultChange change);
+}
@@ -1,4 +1,6 @@
 package com.kesierzg.securevault.service;
+import com.kesierzg.securevault.diagnostics.Operation;
+import com.kesierzg.securevault.diagnostics.VaultMetrics;
 import com.kesierzg.securevault.model.NoteEntry;
 import java.util.List;
 import java.util.ArrayList;
@@ -9,204 +11,1340 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import javax.crypto.spec.SecretKeySpec;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class VaultService {
-    private final List<PasswordEntry> passwordEntries = new ArrayList<>();
+    private static final int DECRYPTION_CACHE_SIZE = 1024;
+    private static final long COMPACTION_THRESHOLD = 1024 * 1024;
+    private static final int MERGE_BATCH_SIZE = 1000;
+    static final String USERNAME = "username";
+    static final String PASSWORD = "password";
+
+    private final Map<String, PasswordEntry> entriesById = new LinkedHashMap<>();
+    private final Map<String, PasswordEntry> entryTombstones = new LinkedHashMap<>();
+    private final Map<String, List<String>> entryIdsByWebsite = new HashMap<>();
+    private final DecryptionCache decryptionCache = new DecryptionCache(DECRYPTION_CACHE_SIZE);
+    private final SecretPool secretPool = new SecretPool();
     private final EncryptionService encryptionService = new EncryptionService();
-    private SecretKeySpec key;
-    private byte[] iv;
-    private byte[] salt;
+    private final StampedLock stateLock = new StampedLock();
+    private volatile Keys keys;
     private final ObjectMapper objectMapper = new ObjectMapper();
-    private final List<NoteEntry> notes = new ArrayList<>();
+    private final Map<String, NoteEntry> notesById = new LinkedHashMap<>();
+    private final Map<String, NoteEntry> noteTombstones = new LinkedHashMap<>();
+    private final Map<String, List<String>> noteIdsByTitle = new HashMap<>();
+    private SearchIndex entrySearch = new SearchIndex();
+    private final SearchIndex noteSearch = new SearchIndex();
+    private volatile boolean searchIndexed;
+    private volatile FingerprintIndex fingerprints;
+    private final List<VaultListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<IOException>> writeFailureListeners = new CopyOnWriteArrayList<>();
+    private VaultChange pendingChange;
+
+    private volatile VaultFormat format = VaultFormat.SEGMENTED;
+    private SegmentedVaultFormat segments;
+    private final BitSet dirtySegments = new BitSet(SegmentedVaultFormat.SEGMENT_COUNT);
+    private final List<Set<String>> entryIdsBySegment = segmentSets();
+    private final List<Set<String>> noteIdsBySegment = segmentSets();
+    private volatile VaultWriter writer;
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private volatile boolean syncing;
+    private volatile boolean legacyFields;
+    private long generation;
+    private long journalBytes;
+    private boolean idsAssigned;
+
+    private record Keys(SecretKeySpec key, byte[] salt, byte[] iv, int iterations, byte[] wrappedKey) {
+        Keys withKey(SecretKeySpec newKey) {
+            return new Keys(newKey, salt, iv, iterations, wrappedKey);
+        }
+    }
 
     public List<NoteEntry> getNotes() {
-        return new ArrayList<>(notes);
+        return read(() -> new ArrayList<>(notesById.values()));
     }
 
-    public void addNote(String title, String content) {
-        notes.add(new NoteEntry(title, content));
+    public NoteEntry getNoteById(String id) {
+        return read(() -> notesById.get(id));
+    }
+
+    public String addNote(String title, String content) {
+        JournalRecord record = new JournalRecord(JournalRecord.Op.ADD_NOTE);
+        record.note = new NoteEntry(newId(), title, content);
+        commit(record);
+        return record.note.getId();
     }
 
     public boolean removeNoteByTitle(String title) {
-        return notes.removeIf(n -> n.getTitle().equals(title));
+        JournalRecord record = new JournalRecord(JournalRecord.Op.REMOVE_NOTE);
+        record.key = title;
+        return commit(record);
+    }
+
+    public boolean removeNoteById(String id) {
+        JournalRecord record = new JournalRecord(JournalRecord.Op.REMOVE_NOTE);
+        record.id = id;
+        return commit(record);
     }
 
     public boolean editNote(String oldTitle, String newTitle, String newContent) {
-        for (int i = 0; i < notes.size(); i++) {
-            NoteEntry n = notes.get(i);
-            if (n.getTitle().equals(oldTitle)) {
-                notes.set(i, new NoteEntry(newTitle, newContent));
-                return true;
-            }
-        }
-        return false;
+        String id = read(() -> firstId(noteIdsByTitle, oldTitle, n -> notesById.get(n).getTitle()));
+        return id != null && editNoteById(id, newTitle, newContent);
+    }
+
+    public boolean editNoteById(String id, String newTitle, String newContent) {
+        JournalRecord record = new JournalRecord(JournalRecord.Op.EDIT_NOTE);
+        record.id = id;
+        record.note = new NoteEntry(id, newTitle, newContent);
+        return commit(record);
     }
 
     public VaultService(String masterPassword) {
+        this(masterPassword, EncryptionService.DEFAULT_ITERATIONS);
+    }
+
+    public VaultService(String masterPassword, int iterations) {
         try {
-            this.salt = encryptionService.generateSalt();
-            this.key = encryptionService.generateKeyFromPassword(masterPassword, salt);
-            this.iv = encryptionService.generateIv();
+            byte[] salt = encryptionService.generateSalt();
+            SecretKeySpec key = encryptionService.generateDataKey();
+            byte[] wrappedKey = encryptionService.wrapKey(key, encryptionService.generateKeyFromPassword(masterPassword, salt, iterations));
+            this.keys = new Keys(key, salt, encryptionService.generateIv(), iterations, wrappedKey);
         } catch (Exception e) {
             throw new RuntimeException("nie udao sie zaszyfrowac :(", e);
         }
     }
 
     public VaultService(String masterPassword, byte[] salt, byte[] iv) {
+        this(masterPassword, salt, iv, EncryptionService.DEFAULT_ITERATIONS);
+    }
+
+    public VaultService(String masterPassword, byte[] salt, byte[] iv, int iterations) {
+        this(masterPassword, salt, iv, iterations, null);
+    }
+
+    private VaultService(String masterPassword, byte[] salt, byte[] iv, int iterations, byte[] wrappedKey) {
         try {
-            this.salt = salt;
-            this.key = encryptionService.generateKeyFromPassword(masterPassword, salt);
-            this.iv = iv;
+            Keys locked = new Keys(null, salt, iv, iterations, wrappedKey);
+            this.keys = locked.withKey(deriveDataKey(locked, masterPassword));
         } catch (Exception e) {
             throw new RuntimeException("nie udao sie zaszyfrowac :(", e);
         }
     }
 
-    public void addEntry(String website, String username, String password) {
+    private SecretKeySpec deriveDataKey(Keys keys, String masterPassword) throws Exception {
+        SecretKeySpec passwordKey = encryptionService.generateKeyFromPassword(masterPassword, keys.salt(), keys.iterations());
+        return keys.wrappedKey() != null ? encryptionService.unwrapKey(keys.wrappedKey(), passwordKey) : passwordKey;
+    }
+
+    private <T> T read(Supplier<T> action) {
+        long stamp = stateLock.readLock();
+        try {
+            return action.get();
+        } finally {
+            stateLock.unlockRead(stamp);
+        }
+    }
+
+    public void lock() {
+        long stamp = stateLock.writeLock();
+        try {
+            keys = keys.withKey(null);
+            decryptionCache.clear();
+            secretPool.clear();
+            entrySearch.clear();
+            noteSearch.clear();
+            searchIndexed = false;
+            fingerprints = null;
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    public void unlock(String masterPassword) {
+        Keys current = keys;
+        if (current.key() != null) {
+            return;
+        }
+        PasswordEntry probe = current.wrappedKey() == null
+                ? read(() -> entriesById.isEmpty() ? null : entriesById.values().iterator().next())
+                : null;
+        SecretKeySpec candidate;
+        try {
+            candidate = deriveDataKey(current, masterPassword);
+            if (probe != null) {
+                encryptionService.decryptField(probe.getUsername(), candidate, legacyIv(current),
+                        EncryptionService.fieldAad(probe.getId(), USERNAME));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("zue haslo :(", e);
+        }
+        long stamp = stateLock.writeLock();
+        try {
+            if (keys == current) {
+                keys = current.withKey(candidate);
+            }
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    public void addListener(VaultListener listener) {
+        listeners.add(listener);
+    }
+
+    public List<String> subscribe(VaultListener listener) {
+        return read(() -> {
+            listeners.add(listener);
+            return new ArrayList<>(entriesById.keySet());
+        });
+    }
+
+    public void removeListener(VaultListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void addWriteFailureListener(Consumer<IOException> listener) {
+        writeFailureListeners.add(listener);
+    }
+
+    private VaultWriter newWriter(File file, VaultJournal journal) {
+        return new VaultWriter(file, journalPath(file), journal,
+                e -> writeFailureListeners.forEach(listener -> listener.accept(e)));
+    }
+
+    public List<String> getEntryIds() {
+        return read(() -> new ArrayList<>(entriesById.keySet()));
+    }
+
+    public boolean isLocked() {
+        return keys.key() == null;
+    }
+
+    private Keys requireUnlocked() {
+        Keys current = keys;
+        if (current.key() == null) {
+            throw new IllegalStateException("sejf jest zablokowany");
+        }
+        return current;
+    }
+
+    public int getIterations() {
+        return keys.iterations();
+    }
+
+    public String addEntry(String website, String username, String password) {
+        JournalRecord record = new JournalRecord(JournalRecord.Op.ADD_ENTRY);
+        record.entry = encryptEntry(newId(), website, username, password);
+        commit(record);
+        return record.entry.getId();
+    }
+
+    public void addEntries(Collection<PasswordEntry> entries) {
+        addEntries(entries, ProgressListener.NONE);
+    }
+
+    public void addEntries(Collection<PasswordEntry> entries, ProgressListener progress) {
+        List<PasswordEntry> plain = new ArrayList<>(entries);
+        long total = plain.size();
+        AtomicLong done = new AtomicLong();
+        List<PasswordEntry> encrypted = plain.parallelStream()
+                .map(entry -> {
+                    PasswordEntry enc = encryptEntry(newId(), entry.getWebsite(), entry.getUsername(), entry.getPassword());
+                    progress.onProgress(done.incrementAndGet(), total);
+                    return enc;
+                })
+                .toList();
+        JournalRecord record = new JournalRecord(JournalRecord.Op.ADD_ENTRIES);
+        record.entries = encrypted;
+        commit(record);
+    }
+
+    public MergeResult mergeEntries(Collection<PasswordEntry> entries, ConflictPolicy policy) {
+        return mergeEntries(entries, policy, ProgressListener.NONE);
+    }
+
+    public MergeResult mergeEntries(Collection<PasswordEntry> entries, ConflictPolicy policy, ProgressListener progress) {
+        MergeResult result = new MergeResult();
+        mergeBatch(new ArrayList<>(entries), policy, result, progress);
+        return result;
+    }
+
+    public MergeResult mergeEntries(EntrySource source, ConflictPolicy policy, ProgressListener progress) throws IOException {
+        MergeResult result = new MergeResult();
+        List<PasswordEntry> batch = new ArrayList<>(MERGE_BATCH_SIZE);
+        AtomicLong merged = new AtomicLong();
+        source.forEach(entry -> {
+            batch.add(entry);
+            if (batch.size() == MERGE_BATCH_SIZE) {
+                mergeBatch(batch, policy, result, ProgressListener.NONE);
+                progress.onProgress(merged.addAndGet(batch.size()), -1);
+                batch.clear();
+            }
+        });
+        mergeBatch(batch, policy, result, ProgressListener.NONE);
+        long total = merged.addAndGet(batch.size());
+        progress.onProgress(total, total);
+        return result;
+    }
+
+    private void mergeBatch(List<PasswordEntry> plain, ConflictPolicy policy, MergeResult result, ProgressListener progress) {
+        if (plain.isEmpty()) {
+            return;
+        }
+        FingerprintIndex index = buildFingerprintIndex();
+        long total = plain.size() * 2L;
+        AtomicLong done = new AtomicLong();
+        List<FingerprintIndex.Fingerprint> imported = plain.parallelStream()
+                .map(entry -> {
+                    FingerprintIndex.Fingerprint fingerprint = index.fingerprint(entry.getWebsite(), entry.getUsername(), entry.getPassword());
+                    progress.onProgress(done.incrementAndGet(), total);
+                    return fingerprint;
+                })
+                .toList();
+        List<PasswordEntry> accepted = new ArrayList<>();
+        long stamp = stateLock.readLock();
+        try {
+            FingerprintIndex batch = new FingerprintIndex(null);
+            for (int i = 0; i < plain.size(); i++) {
+                FingerprintIndex.Fingerprint fingerprint = imported.get(i);
+                List<String> existing = new ArrayList<>(index.idsWithIdentity(fingerprint.identity()));
+                existing.addAll(batch.idsWithIdentity(fingerprint.identity()));
+                String targetId;
+                if (existing.isEmpty()) {
+                    targetId = newId();
+                    result.added();
+                } else if (existing.stream().anyMatch(id -> fingerprint.secret().equals(secretOf(index, batch, id)))) {
+                    result.identical();
+                    continue;
+                } else if (policy == ConflictPolicy.OVERWRITE) {
+                    targetId = existing.get(0);
+                    result.conflict(true);
+                } else if (policy == ConflictPolicy.KEEP_BOTH) {
+                    targetId = newId();
+                    result.conflict(false);
+                    result.added();
+                } else {
+                    result.conflict(false);
+                    continue;
+                }
+                PasswordEntry entry = plain.get(i);
+                accepted.add(new PasswordEntry(targetId, entry.getWebsite(), entry.getUsername(), entry.getPassword()));
+                batch.put(targetId, fingerprint);
+            }
+        } finally {
+            stateLock.unlockRead(stamp);
+        }
+        long encryptedTotal = accepted.size();
+        AtomicLong encryptedDone = new AtomicLong();
+        List<PasswordEntry> encrypted = accepted.parallelStream()
+                .map(entry -> {
+                    PasswordEntry enc = encryptEntry(entry.getId(), entry.getWebsite(), entry.getUsername(), entry.getPassword());
+                    progress.onProgress(plain.size() + plain.size() * encryptedDone.incrementAndGet() / encryptedTotal, total);
+                    return enc;
+                })
+                .toList();
+        JournalRecord record = new JournalRecord(JournalRecord.Op.ADD_ENTRIES);
+        record.entries = encrypted;
+        commit(record);
+        progress.onProgress(total, total);
+    }
+
+    private static String secretOf(FingerprintIndex index, FingerprintIndex batch, String id) {
+        String secret = batch.secretOf(id);
+        return secret != null ? secret : index.secretOf(id);
+    }
+
+    private FingerprintIndex buildFingerprintIndex() {
+        FingerprintIndex index = fingerprints;
+        if (index != null) {
+            return index;
+        }
+        Keys current = requireUnlocked();
+        try {
+            index = new FingerprintIndex(encryptionService.deriveSubkey(current.key(), FingerprintIndex.KEY_LABEL));
+        } catch (Exception e) {
+            throw new RuntimeException("nie udao sie wyprowadzic klucza odciskow :(", e);
+        }
+        FingerprintIndex building = index;
+        Map<String, PasswordEntry> entries = read(() -> new LinkedHashMap<>(entriesById));
+        List<PasswordEntry> ordered = new ArrayList<>(entries.values());
+        List<FingerprintIndex.Fingerprint> computed = ordered.parallelStream()
+                .map(entry -> fingerprintOf(building, current, entry))
+                .toList();
+        for (int i = 0; i < ordered.size(); i++) {
+            index.put(ordered.get(i).getId(), computed.get(i));
+        }
+        long stamp = stateLock.writeLock();
+        try {
+            if (fingerprints != null) {
+                return fingerprints;
+            }
+            if (keys != current) {
+                throw new IllegalStateException("sejf jest zablokowany");
+            }
+            for (PasswordEntry entry : entriesById.values()) {
+                if (entries.remove(entry.getId()) != entry) {
+                    index.put(entry.getId(), fingerprintOf(index, current, entry));
+                }
+            }
+            entries.keySet().forEach(index::remove);
+            fingerprints = index;
+            return index;
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    private FingerprintIndex.Fingerprint fingerprintOf(FingerprintIndex index, Keys current, PasswordEntry entry) {
+        return index.fingerprint(entry.getWebsite(), decryptUncached(current, entry.getId(), USERNAME, entry.getUsername()),
+                decryptUncached(current, entry.getId(), PASSWORD, entry.getPassword()));
+    }
+
+    private PasswordEntry encryptEntry(String id, String website, String username, String password) {
+        Keys current = requireUnlocked();
         try {
-            String encUsername = encryptionService.encrypt(username, key, iv);
-            String encPassword = encryptionService.encrypt(password, key, iv);
-            passwordEntries.add(new PasswordEntry(website, encUsername, encPassword));
+            return new PasswordEntry(id, website,
+                    encryptionService.encryptField(username, current.key(), EncryptionService.fieldAad(id, USERNAME)),
+                    encryptionService.encryptField(password, current.key(), EncryptionService.fieldAad(id, PASSWORD)));
         } catch (Exception e) {
             throw new RuntimeException("nie udao sie zaszyfrowac :(", e);
         }
     }
 
     public List<PasswordEntry> getEntries() {
-        List<PasswordEntry> decrypted = new ArrayList<>();
-        for (PasswordEntry entry : passwordEntries) {
-            try {
-                String decUsername = encryptionService.decrypt(entry.getUsername(), key, iv);
-                String decPassword = encryptionService.decrypt(entry.getPassword(), key, iv);
-                decrypted.add(new PasswordEntry(entry.getWebsite(), decUsername, decPassword));
-            } catch (Exception e) {
-                throw new RuntimeException("nie udao sie rozszyfrowac :(", e);
+        List<PasswordEntry> entries = read(() -> new ArrayList<>(entriesById.values()));
+        try (VaultMetrics.Timer timer = VaultMetrics.start(Operation.GET_ENTRIES)) {
+            timer.items(entries.size());
+            List<PasswordEntry> views = new ArrayList<>(entries.size());
+            for (PasswordEntry entry : entries) {
+                views.add(new DecryptedEntryView(entry, this));
+            }
+            return views;
+        }
+    }
+
+    public void forEachDecrypted(Consumer<PasswordEntry> action) {
+        Keys current = requireUnlocked();
+        List<PasswordEntry> entries = read(() -> new ArrayList<>(entriesById.values()));
+        try (VaultMetrics.Timer timer = VaultMetrics.start(Operation.DECRYPT_ALL)) {
+            timer.items(entries.size());
+            for (PasswordEntry entry : entries) {
+                PasswordEntry decrypted;
+                try {
+                    decrypted = new PasswordEntry(entry.getId(), entry.getWebsite(),
+                            encryptionService.decryptField(entry.getUsername(), current.key(), legacyIv(current),
+                                    EncryptionService.fieldAad(entry.getId(), USERNAME)),
+                            encryptionService.decryptField(entry.getPassword(), current.key(), legacyIv(current),
+                                    EncryptionService.fieldAad(entry.getId(), PASSWORD)));
+                } catch (Exception e) {
+                    throw new RuntimeException("nie udao sie rozszyfrowac :(", e);
+                }
+                action.accept(decrypted);
             }
         }
-        return decrypted;
+    }
+
+    public <T> List<T> mapDecrypted(Function<PasswordEntry, T> mapper) {
+        Keys current = requireUnlocked();
+        List<PasswordEntry> entries = read(() -> new ArrayList<>(entriesById.values()));
+        try (VaultMetrics.Timer timer = VaultMetrics.start(Operation.DECRYPT_ALL)) {
+            timer.items(entries.size());
+            return entries.parallelStream()
+                    .map(entry -> mapper.apply(new PasswordEntry(entry.getId(), entry.getWebsite(),
+                            decryptUncached(current, entry.getId(), USERNAME, entry.getUsername()),
+                            decryptUncached(current, entry.getId(), PASSWORD, entry.getPassword()))))
+                    .toList();
+        }
+    }
+
+    public PasswordEntry getEntry(String website) {
+        return read(() -> {
+            String id = firstId(entryIdsByWebsite, website, e -> entriesById.get(e).getWebsite());
+            return id != null ? new DecryptedEntryView(entriesById.get(id), this) : null;
+        });
+    }
+
+    public PasswordEntry getEntryById(String id) {
+        return read(() -> {
+            PasswordEntry entry = entriesById.get(id);
+            return entry != null ? new DecryptedEntryView(entry, this) : null;
+        });
+    }
+
+    public List<PasswordEntry> findEntries(String website) {
+        return read(() -> {
+            List<PasswordEntry> found = new ArrayList<>();
+            for (String id : entryIdsByWebsite.getOrDefault(normalize(website), List.of())) {
+                found.add(new DecryptedEntryView(entriesById.get(id), this));
+            }
+            return found;
+        });
+    }
+
+    public List<PasswordEntry> searchEntries(String query, int limit) {
+        buildSearchIndex();
+        return read(() -> {
+            List<PasswordEntry> found = new ArrayList<>();
+            for (String id : entrySearch.search(query, limit)) {
+                found.add(new DecryptedEntryView(entriesById.get(id), this));
+            }
+            return found;
+        });
+    }
+
+    public List<NoteEntry> searchNotes(String query, int limit) {
+        buildSearchIndex();
+        return read(() -> {
+            List<NoteEntry> found = new ArrayList<>();
+            for (String id : noteSearch.search(query, limit)) {
+                found.add(notesById.get(id));
+            }
+            return found;
+        });
+    }
+
+    private void buildSearchIndex() {
+        if (searchIndexed) {
+            return;
+        }
+        Map<String, PasswordEntry> entries = read(() -> new LinkedHashMap<>(entriesById));
+        Keys current = requireUnlocked();
+        List<PasswordEntry> ordered = new ArrayList<>(entries.values());
+        List<String> usernames = ordered.parallelStream()
+                .map(entry -> decryptUncached(current, entry.getId(), USERNAME, entry.getUsername()))
+                .toList();
+        SearchIndex index = new SearchIndex();
+        for (int i = 0; i < ordered.size(); i++) {
+            index.put(ordered.get(i).getId(), ordered.get(i).getWebsite(), usernames.get(i));
+        }
+        long stamp = stateLock.writeLock();
+        try {
+            if (searchIndexed || keys != current) {
+                return;
+            }
+            for (PasswordEntry entry : entriesById.values()) {
+                if (entries.remove(entry.getId()) != entry) {
+                    index.put(entry.getId(), entry.getWebsite(), decryptUncached(current, entry.getId(), USERNAME, entry.getUsername()));
+                }
+            }
+            entries.keySet().forEach(index::remove);
+            entrySearch = index;
+            noteSearch.clear();
+            for (NoteEntry note : notesById.values()) {
+                noteSearch.put(note.getId(), note.getTitle());
+            }
+            searchIndexed = true;
+        } finally {
+            stateLock.unlockWrite(stamp);
+        }
+    }
+
+    private String decryptUncached(String id, String field, String cipherText) {
+        return decryptUncached(requireUnlocked(), id, field, cipherText);
+    }
+
+    private String decryptUncached(Keys current, String id, String field, String cipherText) {
+        try {
+            return encryptionService.decryptField(cipherText, current.key(), legacyIv(current), EncryptionService.fieldAad(id, field));
+        } catch (Exception e) {
+            throw new RuntimeException("nie udao sie rozszyfrowac :(", e);
+        }
+    }
+
+    private byte[] legacyIv(Keys current) {
+        return legacyFields ? current.iv() : null;
+    }
+
+    String decryptField(String id, String field, String cipherText) {
+        String plainText = decryptSecret(id, field, cipherText).reveal();
+        return plainText != null ? plainText : decryptUncached(id, field, cipherText);
+    }
+
+    SecretValue decryptSecret(String id, String field, String cipherText) {
+        SecretValue cached = decryptionCache.get(cipherText);
+        if (cached != null) {
+            return cached;
+        }
+        Keys current = requireUnlocked();
+        byte[] buffer = Base64.getDecoder().decode(cipherText);
+        try {
+            int length = encryptionService.decryptFieldInPlace(buffer, current.key(), legacyIv(current),
+                    EncryptionService.fieldAad(id, field));
+            return decryptionCache.put(cipherText, SecretValue.decode(buffer, length, secretPool));
+        } catch (Exception e) {
+            throw new RuntimeException("nie udao sie rozszyfrowac :(", e);
+        } finally {
+            Arrays.fill(buffer, (byte) 0);
+        }
+    }
+
+    private void invalidate(PasswordEntry entry) {
+        decryptionCache.invalidate(entry.getUsername());
+        decryptionCache.invalidate(entry.getPassword());
     }
 
     public void clearAll() {
-        passwordEntries.clear();
+        commit(new JournalRecord(JournalRecord.Op.CLEAR));
+    }
+
+    private boolean commit(JournalRecord record) {
+        List<VaultListener> targets = List.of();
+        VaultChange change = null;
+        long stamp = stateLock.writeLock();
+        try {
+            Keys current = requireUnlocked();
+            if (writer != null && writer.getFailure() != null) {
+                throw new RuntimeException("nie udao sie zapisac poprzednich zmian :(", writer.getFailure());
+            }
+            targets = List.copyOf(listeners);
+            change = targets.isEmpty() ? null : new VaultChange();
+            pendingChange = change;
+            boolean changed = apply(record);
+            if (changed && writer != null) {
+                byte[] frame;
+                try {
+                    byte[] plain = objectMapper.writeValueAsBytes(record);
+                    frame = encryptionService.seal(plain, current.key(),
+                            VaultJournal.frameAad(generation, EncryptionService.sealedLength(plain.length)));
+                } catch (Exception e) {
+                    throw new RuntimeException("nie udao sie zapisac dziennika :(", e);
+                }
+                writer.append(frame);
+                journalBytes += frame.length;
+                if (journalBytes > COMPACTION_THRESHOLD && !syncing) {
+                    scheduleSnapshot();
+                }
+            }
+            return changed;
+        } finally {
+            pendingChange = null;
+            stateLock.unlockWrite(stamp);
+            publish(targets, change);
+        }
+    }
+
+    private static void publish(List<VaultListener> targets, VaultChange change) {
+        if (change != null && !change.isEmpty()) {
+            for (VaultListener listener : targets) {
+                listener.vaultChanged(change);
+            }
+        }
+    }
+
+    private boolean apply(JournalRecord record) {
+        switch (record.op) {
+            case ADD_ENTRY:
+                putEntry(revise(record.entry));
+                return true;
+            case ADD_ENTRIES:
+                for (PasswordEntry entry : record.entries) {
+                    putEntry(revise(entry));
+                }
+                return !record.entries.isEmpty();
+            case EDIT_ENTRY: {
+                String id = record.id != null ? record.id
+                        : firstId(entryIdsByWebsite, record.key, e -> entriesById.get(e).getWebsite());
+                if (id == null || !entriesById.containsKey(id)) {
+                    return false;
+                }
+                PasswordEntry e = record.entry;
+                putEntry(revise(new PasswordEntry(id, e.getWebsite(), e.getUsername(), e.getPassword())));
+                return true;
+            }
+            case REMOVE_ENTRY:
+                if (record.id != null) {
+                    return removeFromIndex(record.id) != null;
+                } else {
+                    List<String> ids = matchingIds(entryIdsByWebsite, record.key, e -> entriesById.get(e).getWebsite());
+                    ids.forEach(this::removeFromIndex);
+                    return !ids.isEmpty();
+                }
+            case ADD_NOTE:
+                putNote(revise(record.note));
+                return true;
+            case EDIT_NOTE: {
+                String id = record.id != null ? record.id
+                        : firstId(noteIdsByTitle, record.key, n -> notesById.get(n).getTitle());
+                if (id == null || !notesById.containsKey(id)) {
+                    return false;
+                }
+                NoteEntry n = record.note;
+                putNote(revise(new NoteEntry(id, n.getTitle(), n.getContent())));
+                return true;
+            }
+            case REMOVE_NOTE:
+                if (record.id != null) {
+                    return removeNoteFromIndex(record.id) != null;
+                } else {
+                    List<String> ids = matchingIds(noteIdsByTitle, record.key, n -> notesById.get(n).getTitle());
+                    ids.forEach(this::removeNoteFromIndex);
+                    return !ids.isEmpty();
+                }
+            case CLEAR:
+                boolean changed = !entriesById.isEmpty();
+                for (PasswordEntry entry : entriesById.values()) {
+                    touchEntry(entry.getId());
+                    entryTombstones.put(entry.getId(), PasswordEntry.tombstone(entry.getId(), entry.getRevision() + 1));
+                }
+                entriesById.clear();
+                if (pendingChange != null) {
+                    pendingChange.cleared();
+                }
+                entryIdsByWebsite.clear();
+                entrySearch.clear();
+                if (fingerprints != null) {
+                    fingerprints.clear();
+                }
+                decryptionCache.clear();
+                return changed;
+            default:
+                throw new IllegalStateException("nieznana operacja: " + record.op);
+        }
+    }
+
+    private PasswordEntry revise(PasswordEntry entry) {
+        PasswordEntry live = entriesById.get(entry.getId());
+        PasswordEntry tombstone = entryTombstones.get(entry.getId());
+        long revision = Math.max(live != null ? live.getRevision() : 0, tombstone != null ? tombstone.getRevision() : 0);
+        return entry.withRevision(revision + 1);
+    }
+
+    private NoteEntry revise(NoteEntry note) {
+        NoteEntry live = notesById.get(note.getId());
+        NoteEntry tombstone = noteTombstones.get(note.getId());
+        long revision = Math.max(live != null ? live.getRevision() : 0, tombstone != null ? tombstone.getRevision() : 0);
+        return note.withRevision(revision + 1);
+    }
+
+    private void putEntry(PasswordEntry entry) {
+        if (entry.getId() == null) {
+            entry = new PasswordEntry(newId(), entry.getWebsite(), entry.getUsername(), entry.getPassword());
+            idsAssigned = true;
+        }
+        PasswordEntry previous = entriesById.put(entry.getId(), entry);
+        entryTombstones.remove(entry.getId());
+        touchEntry(entry.getId());
+        if (pendingChange != null) {
+            pendingChange.entryPut(entry.getId(), previous == null);
+        }
+        if (previous != null) {
+            invalidate(previous);
+            unindex(entryIdsByWebsite, previous.getWebsite(), previous.getId());
+        }
+        invalidate(entry);
+        entryIdsByWebsite.computeIfAbsent(normalize(entry.getWebsite()), k -> new ArrayList<>(1)).add(entry.getId());
+        if (searchIndexed) {
+            entrySearch.put(entry.getId(), entry.getWebsite(), decryptUncached(entry.getId(), USERNAME, entry.getUsername()));
+        }
+        if (fingerprints != null) {
+            fingerprints.put(entry.getId(), fingerprintOf(fingerprints, requireUnlocked(), entry));
+        }
+    }
+
+    private void touchEntry(String id) {
+        int segment = SegmentedVaultFormat.segmentOf(id);
+        dirtySegments.set(segment);
+        entryIdsBySegment.get(segment).add(id);
+    }
+
+    private void touchNote(String id) {
+        int segment = SegmentedVaultFormat.segmentOf(id);
+        dirtySegments.set(segment);
+        noteIdsBySegment.get(segment).add(id);
+    }
+
+    private static List<Set<String>> segmentSets() {
+        List<Set<String>> sets = new ArrayList<>(SegmentedVaultFormat.SEGMENT_COUNT);
+        for (int i = 0; i < SegmentedVaultFormat.SEGMENT_COUNT; i++) {
+            sets.add(new LinkedHashSet<>());
+        }
+        return sets;
+    }
+
+    private PasswordEntry removeFromIndex(String id) {
+        PasswordEntry removed = entriesById.remove(id);
+        if (removed != null) {
+            entryTombstones.put(id, PasswordEntry.tombstone(id, removed.getRevision() + 1));
+            touchEntry(id);
+            if (pendingChange != null) {
+                pendingChange.entryRemoved(id);
+            }
+            invalidate(removed);
+            unindex(entryIdsByWebsite, removed.getWebsite(), id);
+            entrySearch.remove(id);
+            if (fingerprints != null) {
+                fingerprints.remove(id);
+            }
+        }
+        return removed;
+    }
+
+    private void putNote(NoteEntry note) {
+        if (note.getId() == null) {
+            note = new NoteEntry(newId(), note.getTitle(), note.getContent());
+            idsAssigned = true;
+        }
+        NoteEntry previous = notesById.put(note.getId(), note);
+        noteTombstones.remove(note.getId());
+        touchNote(note.getId());
+        if (pendingChange != null) {
+            pendingChange.notesChanged();
+        }
+        if (previous != null) {
+            unindex(noteIdsByTitle, previous.getTitle(), previous.getId());
+        }
+        noteIdsByTitle.computeIfAbsent(normalize(note.getTitle()), k -> new ArrayList<>(1)).add(note.getId());
+        if (searchIndexed) {
+            noteSearch.put(note.getId(), note.getTitle());
+        }
+    }
+
+    private NoteEntry removeNoteFromIndex(String id) {
+        NoteEntry removed = notesById.remove(id);
+        if (removed != null) {
+            noteTombstones.put(id, NoteEntry.tombstone(id, removed.getRevision() + 1));
+            touchNote(id);
+            if (pendingChange != null) {
+                pendingChange.notesChanged();
+            }
+            unindex(noteIdsByTitle, removed.getTitle(), id);
+            noteSearch.remove(id);
+        }
+        return removed;
+    }
+
+    private static void unindex(Map<String, List<String>> index, String name, String id) {
+        String normalized = normalize(name);
+        List<String> ids = index.get(normalized);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                index.remove(normalized);
+            }
+        }
+    }
+
+    private static String firstId(Map<String, List<String>> index, String name,
+                                  Function<String, String> nameOf) {
+        for (String id : index.getOrDefault(normalize(name), List.of())) {
+            if (nameOf.apply(id).equals(name)) {
+                return id;
+            }
+        }
+        return null;
+    }
+
+    private static List<String> matchingIds(Map<String, List<String>> index, String name,
+                                            Function<String, String> nameOf) {
+        List<String> ids = new ArrayList<>();
+        for (String id : index.getOrDefault(normalize(name), List.of())) {
+            if (nameOf.apply(id).equals(name)) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    static String normalize(String name) {
+        return name == null ? "" : name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String newId() {
+        return UUID.randomUUID().toString();
     }
 
     public void saveToFile(File file) {
+        syncLock.lock();
+        long stamp = stateLock.writeLock();
         try {
-            EncryptedVaultData data = new EncryptedVaultData(
-                    salt,
-                    iv,
-                    passwordEntries,
-                    notes
-            );
-            objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, data);
+            if (writer == null || !writer.getFile().equals(file)) {
+                closeWriter();
+                writer = newWriter(file, null);
+            }
+            scheduleSnapshot();
+        } finally {
+            stateLock.unlockWrite(stamp);
+            syncLock.unlock();
+        }
+        flush();
+    }
+
+    public void flush() {
+        VaultWriter current = writer;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.flush().join();
+        } catch (Exception e) {
+            throw new RuntimeException("nie udao sie zapisac zmian", e.getCause());
+        }
+    }
+
+    public void close() {
+        syncLock.lock();
+        long stamp = stateLock.writeLock();
+        try {
+            if (writer != null && journalBytes > 0 && keys.key() != null) {
+                scheduleSnapshot();
+            }
+            closeWriter();
+        } finally {
+            stateLock.unlockWrite(stamp);
+            syncLock.unlock();
+        }
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
         } catch (IOException e) {
             throw new RuntimeException("nie udao sie zapisac zmian", e);
+        } finally {
+            writer = null;
+        }
+    }
+
+    public VaultFormat getFormat() {
+        return format;
+    }
+
+    public void setFormat(VaultFormat format) {
+        syncLock.lock();
+        long stamp = stateLock.writeLock();
+        try {
+            if (this.format != format) {
+                this.format = format;
+                segments = null;
+            }
+        } finally {
+            stateLock.unlockWrite(stamp);
+            syncLock.unlock();
+        }
+    }
+
+    private void scheduleSnapshot() {
+        generation++;
+        EncryptedVaultData data;
+        VaultFormat snapshotFormat = format;
+        Keys snapshotKeys = keys;
+        try (VaultMetrics.Timer timer = VaultMetrics.start(Operation.SAVE_SERIALIZE)) {
+            if (snapshotFormat == VaultFormat.SEGMENTED) {
+                data = new EncryptedVaultData(snapshotKeys.salt(), snapshotKeys.iv(), snapshotKeys.iterations(),
+                        snapshotKeys.wrappedKey(), List.of(), List.of(), generation);
+                timer.items(stageDirtySegments());
+            } else {
+                List<PasswordEntry> entries = new ArrayList<>(entriesById.values());
+                entries.addAll(entryTombstones.values());
+                List<NoteEntry> notes = new ArrayList<>(notesById.values());
+                notes.addAll(noteTombstones.values());
+                data = new EncryptedVaultData(snapshotKeys.salt(), snapshotKeys.iv(), snapshotKeys.iterations(),
+                        snapshotKeys.wrappedKey(), entries, notes, generation);
+                timer.items(entries.size() + notes.size());
+            }
+        }
+        data.sealedFields = !legacyFields;
+        SegmentedVaultFormat snapshotSegments = segments;
+        SecretKeySpec snapshotKey = snapshotKeys.key();
+        writer.snapshot(generation, file -> {
+            if (snapshotFormat == VaultFormat.SEGMENTED) {
+                try (VaultMetrics.Timer timer = VaultMetrics.start(Operation.SAVE_WRITE)) {
+                    timer.items(data.entries.size() + data.notes.size());
+                    snapshotSegments.write(data, encryptionService, snapshotKey);
+                }
+            } else {
+                writeSnapshot(file, data, snapshotFormat, snapshotKey);
+            }
+        });
+        journalBytes = 0;
+        idsAssigned = false;
+    }
+
+    private int stageDirtySegments() {
+        if (segments == null || !segments.getFile().equals(writer.getFile())) {
+            segments = new SegmentedVaultFormat(writer.getFile());
+            dirtySegments.set(0, SegmentedVaultFormat.SEGMENT_COUNT);
+        }
+        Map<Integer, SegmentedVaultFormat.Segment> changed = new HashMap<>();
+        for (int i = dirtySegments.nextSetBit(0); i >= 0; i = dirtySegments.nextSetBit(i + 1)) {
+            changed.put(i, new SegmentedVaultFormat.Segment(new ArrayList<>(), new ArrayList<>()));
+        }
+        int items = 0;
+        for (Map.Entry<Integer, SegmentedVaultFormat.Segment> dirty : changed.entrySet()) {
+            for (String id : entryIdsBySegment.get(dirty.getKey())) {
+                PasswordEntry entry = entriesById.get(id);
+                dirty.getValue().entries().add(entry != null ? entry : entryTombstones.get(id));
+            }
+            for (String id : noteIdsBySegment.get(dirty.getKey())) {
+                NoteEntry note = notesById.get(id);
+                dirty.getValue().notes().add(note != null ? note : noteTombstones.get(id));
+            }
+            items += dirty.getValue().entries().size() + dirty.getValue().notes().size();
+        }
+        if (!changed.isEmpty()) {
+            segments.stage(changed);
+        }
+        dirtySegments.clear();
+        return items;
+    }
+
+    private void writeSnapshot(File file, EncryptedVaultData data, VaultFormat format, SecretKeySpec key) throws IOException {
+        try (VaultMetrics.Timer timer = VaultMetrics.start(Operation.SAVE_WRITE)) {
+            timer.items(data.entries.size() + data.notes.size());
+            writeSnapshotFile(file, data, format, key);
+        }
+    }
+
+    private void writeSnapshotFile(File file, EncryptedVaultData data, VaultFormat format, SecretKeySpec key) throws IOException {
+        Path target = file.toPath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        if (format == VaultFormat.COMPRESSED) {
+            CompressedVaultFormat.write(tmp.toFile(), data, encryptionService, key);
+        } else {
+            try (FileOutputStream out = new FileOutputStream(tmp.toFile());
+                 BufferedOutputStream buffered = new BufferedOutputStream(out)) {
+                objectMapper.writerWithDefaultPrettyPrinter().writeValue(new NonClosingOutputStream(buffered), data);
+                buffered.flush();
+                out.getFD().sync();
+            }
         }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static Path journalPath(File file) {
+        return file.toPath().resolveSibling(file.getName() + ".journal");
     }
 
     public static VaultService loadFromFile(File file, String masterPassword) {
+        return load(file, masterPassword, true);
+    }
+
+    public static VaultService loadReadOnly(File file, String masterPassword) {
+        return load(file, masterPassword, false);
+    }
+
+    private static VaultService load(File file, String masterPassword, boolean writable) {
         try {
-            System.out.println("wczytujeee: " + file.getAbsolutePath());
-            ObjectMapper mapper = new ObjectMapper();
-            EncryptedVaultData data = mapper.readValue(file, EncryptedVaultData.class);
-            VaultService vault = new VaultService(masterPassword, data.getSaltBytes(), data.getIvBytes());
-            vault.passwordEntries.addAll(data.entries);
-            if (data.notes != null) {
-                vault.notes.clear();
-                vault.notes.addAll(data.notes);
+            VaultFormat format = SegmentedVaultFormat.isManifest(file) ? VaultFormat.SEGMENTED
+                    : CompressedVaultFormat.isCompressed(file) ? VaultFormat.COMPRESSED : VaultFormat.JSON;
+            EncryptedVaultData data;
+            VaultService vault;
+            try (VaultMetrics.Timer timer = VaultMetrics.start(Operation.LOAD_READ)) {
+                if (format == VaultFormat.SEGMENTED) {
+                    data = new EncryptedVaultData(null, null, 0, null, 0, List.of(), List.of());
+                    SegmentedVaultFormat segments = SegmentedVaultFormat.open(file, data);
+                    vault = new VaultService(masterPassword, data.getSaltBytes(), data.getIvBytes(),
+                            data.iterations, data.getWrappedKeyBytes());
+                    segments.verify(vault.encryptionService, vault.keys.key());
+                    segments.readSegments(data, vault.encryptionService, vault.keys.key());
+                    vault.segments = segments;
+                } else if (format == VaultFormat.COMPRESSED) {
+                    data = CompressedVaultFormat.readHeader(file);
+                    vault = new VaultService(masterPassword, data.getSaltBytes(), data.getIvBytes(),
+                            data.iterations, data.getWrappedKeyBytes());
+                    CompressedVaultFormat.readPayload(file, data, vault.encryptionService, vault.keys.key());
+                } else {
+                    ObjectMapper mapper = new ObjectMapper();
+                    data = mapper.readValue(file, EncryptedVaultData.class);
+                    vault = new VaultService(masterPassword, data.getSaltBytes(), data.getIvBytes(),
+                            data.iterations, data.getWrappedKeyBytes());
+                }
+                timer.items(data.entries.size() + data.notes.size());
             }
+            vault.format = format;
+            try (VaultMetrics.Timer timer = VaultMetrics.start(Operation.LOAD_INDEX)) {
+                timer.items(data.entries.size() + data.notes.size());
+                for (PasswordEntry entry : data.entries) {
+                    if (entry.isDeleted()) {
+                        vault.entryTombstones.put(entry.getId(), entry);
+                        vault.touchEntry(entry.getId());
+                    } else {
+                        vault.putEntry(entry);
+                    }
+                }
+                for (NoteEntry note : data.notes) {
+                    if (note.isDeleted()) {
+                        vault.noteTombstones.put(note.getId(), note);
+                        vault.touchNote(note.getId());
+                    } else {
+                        vault.putNote(note);
+                    }
+                }
+            }
+            vault.generation = data.generation;
+            vault.legacyFields = format == VaultFormat.JSON && !data.sealedFields;
+            vault.dirtySegments.clear();
+            try (VaultMetrics.Timer timer = VaultMetrics.start(Operation.LOAD_REPLAY)) {
+                timer.items(vault.replayJournal(file, writable));
+            }
+            vault.migrateLegacyFields();
             return vault;
         } catch (IOException e) {
-            System.err.println("NiE wCzYtAnOoO s PoWodU blEeeEndUUuu :((" + e.getMessage());
             throw new RuntimeException("eRooR BaaaZyyy dAAnych", e);
         }
     }
 
-    @JsonIgnoreProperties(ignoreUnknown = true)
-    private static class EncryptedVaultData {
-        public String salt;
-        public String iv;
-        public List<PasswordEntry> entries;
-        public List<NoteEntry> notes;
+    public static VaultService migrateFromJson(File legacyFile, File file, String masterPassword) {
+        VaultService vault = load(legacyFile, masterPassword, false);
+        vault.setFormat(VaultFormat.SEGMENTED);
+        vault.saveToFile(file);
+        return vault;
+    }
 
-        @JsonCreator
-        public EncryptedVaultData(
-                @JsonProperty("salt") String salt,
-                @JsonProperty("iv") String iv,
-                @JsonProperty("entries") List<PasswordEntry> entries,
-                @JsonProperty("notes") List<NoteEntry> notes) {
-            this.salt = salt;
-            this.iv = iv;
-            this.entries = entries;
-            this.notes = notes != null ? notes : new ArrayList<>();
+    private void migrateLegacyFields() {
+        if (!legacyFields) {
+            return;
+        }
+        Keys current = keys;
+        List<PasswordEntry> migrated = entriesById.values().parallelStream()
+                .map(entry -> {
+                    try {
+                        String id = entry.getId();
+                        return new PasswordEntry(id, entry.getWebsite(),
+                                reseal(current, id, USERNAME, entry.getUsername()),
+                                reseal(current, id, PASSWORD, entry.getPassword()),
+                                entry.getRevision(), false);
+                    } catch (Exception e) {
+                        throw new RuntimeException("nie udao sie przeszyfrowac wpisu :(", e);
+                    }
+                })
+                .toList();
+        migrated.forEach(this::putEntry);
+        legacyFields = false;
+        if (writer != null) {
+            scheduleSnapshot();
         }
+    }
+
+    private String reseal(Keys current, String id, String field, String cipherText) throws Exception {
+        byte[] aad = EncryptionService.fieldAad(id, field);
+        return encryptionService.encryptField(encryptionService.decryptField(cipherText, current.key(), current.iv(), aad),
+                current.key(), aad);
+    }
 
-        public EncryptedVaultData(byte[] salt, byte[] iv, List<PasswordEntry> entries, List<NoteEntry> notes) {
-            this.salt = Base64.getEncoder().encodeToString(salt);
-            this.iv = Base64.getEncoder().encodeToString(iv);
-            this.entries = entries;
-            this.notes = notes != null ? notes : new ArrayList<>();
+    private int replayJournal(File file, boolean writable) throws IOException {
+        Keys current = keys;
+        int[] replayed = new int[1];
+        VaultJournal.State state = VaultJournal.replay(journalPath(file), generation, (payload, aad) -> {
+            replayed[0]++;
+            try {
+                apply(objectMapper.readValue(encryptionService.open(payload, current.key(), aad), JournalRecord.class));
+            } catch (Exception e) {
+                throw new RuntimeException("eRooR BaaaZyyy dAAnych", e);
+            }
+        });
+        if (!writable) {
+            if (state != null) {
+                generation = state.generation;
+            }
+            return replayed[0];
         }
-        @JsonIgnore
-        public byte[] getSaltBytes() {
-            return Base64.getDecoder().decode(salt);
+        VaultJournal journal;
+        if (state != null) {
+            journal = VaultJournal.open(journalPath(file), state);
+            generation = state.generation;
+            journalBytes = state.frameBytes();
+        } else {
+            journal = VaultJournal.create(journalPath(file), generation);
         }
-        @JsonIgnore
-        public byte[] getIvBytes() {
-            return Base64.getDecoder().decode(iv);
+        writer = newWriter(file, journal);
+        if (idsAssigned) {
+            scheduleSnapshot();
         }
+        return replayed[0];
     }
 
     public void changeMasterPassword(String newPassword) {
+        changeMasterPassword(newPassword, getIterations());
+    }
+
+    public void changeMasterPassword(String newPassword, int newIterations) {
+        Keys current = requireUnlocked();
+        Keys changed;
         try {
-            List<PasswordEntry> decryptedEntries = getEntries();
             byte[] newSalt = encryptionService.generateSalt();
-            byte[] newIv = encryptionService.generateIv();
-            SecretKeySpec newKey = encryptionService.generateKeyFromPassword(newPassword, newSalt);
-            List<PasswordEntry> reEncrypted = new ArrayList<>();
-            for (PasswordEntry entry : decryptedEntries) {
-                String encUsername = encryptionService.encrypt(entry.getUsername(), newKey, newIv);
-                String encPassword = encryptionService.encrypt(entry.getPassword(), newKey, newIv);
-                reEncrypted.add(new PasswordEntry(entry.getWebsite(), encUsername, encPassword));
-            }
-            this.passwordEntries.clear();
-            this.passwordEntries.addAll(reEncrypted);
-            this.key = newKey;
-            this.iv = newIv;
-            this.salt = newSalt;
+            SecretKeySpec newPasswordKey = encryptionService.generateKeyFromPassword(newPassword, newSalt, newIterations);
+            changed = new Keys(current.key(), newSalt, current.iv(), newIterations,
+                    encryptionService.wrapKey(current.key(), newPasswordKey));
         } catch (Exception e) {
             throw new RuntimeException("nie udao sie zminic hasua :(", e);
         }
+        syncLock.lock();
+        long stamp = stateLock.writeLock();
+        try {
+            if (keys.key() != current.key()) {
+                throw new IllegalStateException("sejf zostal zablokowany w trakcie zmiany hasla");
+            }
+            keys = changed;
+            if (writer != null) {
+                scheduleSnapshot();
+            }
+        } finally {
+            stateLock.unlockWrite(stamp);
+            syncLock.unlock();
+        }
+    }
+
+    public SyncResult syncWith(File remote) {
+        syncLock.lock();
+        try {
+            Keys current;
+            VaultWriter syncWriter;
+            long stamp = stateLock.writeLock();
+            try {
+                current = requireUnlocked();
+                if (writer == null || format != VaultFormat.SEGMENTED) {
+                    throw new IllegalStateException("synchronizacja wymaga zapisanej bazy w formacie segmentowym");
+                }
+                scheduleSnapshot();
+                syncWriter = writer;
+                syncing = true;
+            } finally {
+                stateLock.unlockWrite(stamp);
+            }
+            try {
+                SyncResult result = syncWriter.exclusive(() -> new VaultSync(encryptionService)
+                        .sync(syncWriter.getFile(), remote, current.key(), current.iv())).join();
+                applySync(syncWriter, result, current.key());
+                flush();
+                return result;
+            } catch (CompletionException e) {
+                throw new RuntimeException("nie udao sie zsynchronizowac :(", e.getCause());
+            } finally {
+                syncing = false;
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void applySync(VaultWriter syncWriter, SyncResult result, SecretKeySpec key) {
+        List<VaultListener> targets = List.of();
+        VaultChange change = null;
+        long stamp = stateLock.writeLock();
+        try {
+            targets = List.copyOf(listeners);
+            change = targets.isEmpty() ? null : new VaultChange();
+            BitSet editedDuringSync = (BitSet) dirtySegments.clone();
+            if (result.isLocalChanged()) {
+                pendingChange = change;
+                for (Map.Entry<Integer, SegmentedVaultFormat.Segment> segment : result.getLocalUpdates().entrySet()) {
+                    boolean edited = editedDuringSync.get(segment.getKey());
+                    segment.getValue().entries().forEach(entry -> applySynced(entry, edited));
+                    segment.getValue().notes().forEach(note -> applySynced(note, edited));
+                }
+            }
+            EncryptedVaultData header = new EncryptedVaultData(null, null, 0, null, 0, List.of(), List.of());
+            segments = SegmentedVaultFormat.open(syncWriter.getFile(), header);
+            segments.verify(encryptionService, key);
+            generation = header.generation;
+            dirtySegments.clear();
+            dirtySegments.or(editedDuringSync);
+            syncing = false;
+            scheduleSnapshot();
+        } catch (IOException e) {
+            throw new RuntimeException("nie udao sie zsynchronizowac :(", e);
+        } finally {
+            pendingChange = null;
+            stateLock.unlockWrite(stamp);
+            publish(targets, change);
+        }
+    }
+
+    private void applySynced(PasswordEntry entry, boolean editedDuringSync) {
+        PasswordEntry existing = entriesById.get(entry.getId());
+        if (existing == null) {
+            existing = entryTombstones.get(entry.getId());
+        }
+        if (existing != null && (VaultSync.sameEntry(existing, entry)
+                || editedDuringSync && existing.getRevision() >= entry.getRevision())) {
+            return;
+        }
+        if (entry.isDeleted()) {
+            removeFromIndex(entry.getId());
+            entryTombstones.put(entry.getId(), entry);
+            touchEntry(entry.getId());
+        } else {
+            putEntry(entry);
+        }
+    }
+
+    private void applySynced(NoteEntry note, boolean editedDuringSync) {
+        NoteEntry existing = notesById.get(note.getId());
+        if (existing == null) {
+            existing = noteTombstones.get(note.getId());
+        }
+        if (existing != null && (VaultSync.sameNote(existing, note)
+                || editedDuringSync && existing.getRevision() >= note.getRevision())) {
+            return;
+        }
+        if (note.isDeleted()) {
+            removeNoteFromIndex(note.getId());
+            noteTombstones.put(note.getId(), note);
+            touchNote(note.getId());
+        } else {
+            putNote(note);
+        }
     }
 
     public void removeEntry(PasswordEntry entry) {
-        passwordEntries.remove(entry);
+        removeEntryById(entry.getId());
+    }
+
+    public boolean removeEntryById(String id) {
+        JournalRecord record = new JournalRecord(JournalRecord.Op.REMOVE_ENTRY);
+        record.id = id;
+        return commit(record);
     }
 
     public boolean removeEntryByWebsite(String website) {
-        return passwordEntries.removeIf(e -> e.getWebsite().equals(website));
+        JournalRecord record = new JournalRecord(JournalRecord.Op.REMOVE_ENTRY);
+        record.key = website;
+        return commit(record);
     }
 
     public boolean editEntry(String oldWebsite, String newWebsite, String newUsername, String newPassword) {
-        for (int i = 0; i < passwordEntries.size(); i++) {
-            PasswordEntry e = passwordEntries.get(i);
-            if (e.getWebsite().equals(oldWebsite)) {
-                try {
-                    String encUsername = encryptionService.encrypt(newUsername, key, iv);
-                    String encPassword = encryptionService.encrypt(newPassword, key, iv);
-                    passwordEntries.set(i, new PasswordEntry(newWebsite, encUsername, encPassword));
-                    return true;
-                } catch (Exception ex) {
-                    throw new RuntimeException("nie udao sie zaszyfrofac pliku :(", ex);
-                }
-            }
+        String id = read(() -> firstId(entryIdsByWebsite, oldWebsite, e -> entriesById.get(e).getWebsite()));
+        return id != null && editEntryById(id, newWebsite, newUsername, newPassword);
+    }
+
+    public boolean editEntryById(String id, String newWebsite, String newUsername, String newPassword) {
+        if (!read(() -> entriesById.containsKey(id))) {
+            return false;
         }
-        return false;
+        JournalRecord record = new JournalRecord(JournalRecord.Op.EDIT_ENTRY);
+        record.id = id;
+        record.entry = encryptEntry(id, newWebsite, newUsername, newPassword);
+        return commit(record);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,253 @@
+package com.kesierzg.securevault.service;
+
+import com.kesierzg.securevault.model.NoteEntry;
+import com.kesierzg.securevault.model.PasswordEntry;
+import com.kesierzg.securevault.model.Versioned;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+import java.util.stream.IntStream;
+import javax.crypto.spec.SecretKeySpec;
+
+public class VaultSync {
+
+    private static final Comparator<PasswordEntry> ENTRY_ORDER = Comparator
+            .comparing(PasswordEntry::getWebsite, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(PasswordEntry::getUsername, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(PasswordEntry::getPassword, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+    private static final Comparator<NoteEntry> NOTE_ORDER = Comparator
+            .comparing(NoteEntry::getTitle, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(NoteEntry::getContent, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+
+    private final EncryptionService encryptionService;
+
+    private record Side(File file, EncryptedVaultData header, SegmentedVaultFormat format, boolean exists) {
+    }
+
+    public VaultSync() {
+        this(new EncryptionService());
+    }
+
+    VaultSync(EncryptionService encryptionService) {
+        this.encryptionService = encryptionService;
+    }
+
+    public static Path basePath(File local, File remote) {
+        String remotePath = remote.getAbsoluteFile().toPath().normalize().toString();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(remotePath.getBytes(StandardCharsets.UTF_8));
+            return local.toPath().resolveSibling(local.getName() + ".sync")
+                    .resolve(HexFormat.of().formatHex(digest, 0, 8) + ".base");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("brak SHA-256", e);
+        }
+    }
+
+    public SyncResult sync(File local, File remote, String masterPassword) throws IOException {
+        Side localSide = open(local, null, false);
+        EncryptedVaultData header = localSide.header();
+        SecretKeySpec key;
+        try {
+            SecretKeySpec passwordKey = encryptionService.generateKeyFromPassword(masterPassword, header.getSaltBytes(),
+                    header.iterations > 0 ? header.iterations : EncryptionService.DEFAULT_ITERATIONS);
+            byte[] wrappedKey = header.getWrappedKeyBytes();
+            key = wrappedKey != null ? encryptionService.unwrapKey(wrappedKey, passwordKey) : passwordKey;
+        } catch (Exception e) {
+            throw new RuntimeException("zue haslo :(", e);
+        }
+        return sync(localSide, remote, key);
+    }
+
+    SyncResult sync(File local, File remote, SecretKeySpec key, byte[] iv) throws IOException {
+        Side localSide = open(local, null, true);
+        if (!Arrays.equals(localSide.header().getIvBytes(), iv)) {
+            throw new IOException("plik " + local.getName() + " nie pasuje do otwartej bazy");
+        }
+        return sync(localSide, remote, key);
+    }
+
+    private SyncResult sync(Side local, File remote, SecretKeySpec key) throws IOException {
+        local.format().verify(encryptionService, key);
+        Side remoteSide = open(remote, local.header(), false);
+        remoteSide.format().verify(encryptionService, key);
+        if (!Arrays.equals(local.header().getIvBytes(), remoteSide.header().getIvBytes())) {
+            throw new IOException("bazy " + local.file().getName() + " i " + remote.getName() + " nie sa kopiami tego samego sejfu");
+        }
+        Path basePath = basePath(local.file(), remote);
+        Files.createDirectories(basePath.getParent());
+        Side base = open(basePath.toFile(), local.header(), false);
+        base.format().verify(encryptionService, key);
+
+        SyncResult result = new SyncResult();
+        Set<Integer> toRemote = ConcurrentHashMap.newKeySet();
+        Set<Integer> toBase = ConcurrentHashMap.newKeySet();
+        try {
+            IntStream.range(0, SegmentedVaultFormat.SEGMENT_COUNT).parallel().forEach(i -> {
+                try {
+                    syncSegment(i, local, remoteSide, base, key, result, toRemote, toBase);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (result.isLocalChanged()) {
+            local.format().stage(result.getLocalUpdates());
+            write(local, key);
+        }
+        if (!toRemote.isEmpty() || !remoteSide.exists()) {
+            toRemote.forEach(i -> remoteSide.format().stageCopy(i, local.format()));
+            write(remoteSide, key);
+        }
+        if (!toBase.isEmpty() || !base.exists()) {
+            toBase.forEach(i -> base.format().stageCopy(i, local.format()));
+            write(base, key);
+        }
+        return result;
+    }
+
+    private void syncSegment(int index, Side local, Side remote, Side base, SecretKeySpec key, SyncResult result,
+                             Set<Integer> toRemote, Set<Integer> toBase) throws IOException {
+        int localChecksum = local.format().checksum(index);
+        if (localChecksum == remote.format().checksum(index)) {
+            if (!base.exists() || base.format().checksum(index) != localChecksum) {
+                toBase.add(index);
+            }
+            return;
+        }
+        SegmentedVaultFormat.Segment baseSegment = base.format().readSegment(index, encryptionService, key);
+        SegmentedVaultFormat.Segment localSegment = local.format().readSegment(index, encryptionService, key);
+        SegmentedVaultFormat.Segment remoteSegment = remote.format().readSegment(index, encryptionService, key);
+
+        boolean[] changed = new boolean[1];
+        List<PasswordEntry> entries = merge(baseSegment.entries(), localSegment.entries(), remoteSegment.entries(),
+                VaultSync::sameEntry, ENTRY_ORDER, result, changed);
+        List<NoteEntry> notes = merge(baseSegment.notes(), localSegment.notes(), remoteSegment.notes(),
+                VaultSync::sameNote, NOTE_ORDER, result, changed);
+        result.compared(index, changed[0] ? new SegmentedVaultFormat.Segment(entries, notes) : null);
+        toRemote.add(index);
+        toBase.add(index);
+    }
+
+    private static <T extends Versioned> List<T> merge(List<T> base, List<T> local, List<T> remote,
+                                                       BiPredicate<T, T> same, Comparator<T> order,
+                                                       SyncResult result, boolean[] changed) {
+        Map<String, T> baseById = byId(base);
+        Map<String, T> localById = byId(local);
+        Map<String, T> remoteById = byId(remote);
+        Map<String, T> ids = new LinkedHashMap<>(localById);
+        remoteById.forEach(ids::putIfAbsent);
+        List<T> merged = new ArrayList<>(ids.size());
+        for (String id : ids.keySet()) {
+            T localEntry = localById.get(id);
+            T remoteEntry = remoteById.get(id);
+            T picked = pick(baseById.get(id), localEntry, remoteEntry, same, order, result);
+            changed[0] |= localEntry == null || !same.test(picked, localEntry);
+            merged.add(picked);
+        }
+        return merged;
+    }
+
+    private static <T extends Versioned> T pick(T base, T local, T remote, BiPredicate<T, T> same, Comparator<T> order,
+                                                SyncResult result) {
+        if (local == null) {
+            result.pulled();
+            return remote;
+        }
+        if (remote == null) {
+            result.pushed();
+            return local;
+        }
+        if (same.test(local, remote)) {
+            return local;
+        }
+        boolean localChanged = base == null || local.getRevision() != base.getRevision();
+        boolean remoteChanged = base == null || remote.getRevision() != base.getRevision();
+        if (!remoteChanged) {
+            result.pushed();
+            return local;
+        }
+        if (!localChanged) {
+            result.pulled();
+            return remote;
+        }
+        result.conflict();
+        if (local.getRevision() != remote.getRevision()) {
+            return local.getRevision() > remote.getRevision() ? local : remote;
+        }
+        if (local.isDeleted() != remote.isDeleted()) {
+            return local.isDeleted() ? remote : local;
+        }
+        return order.compare(local, remote) >= 0 ? local : remote;
+    }
+
+    static boolean sameEntry(PasswordEntry a, PasswordEntry b) {
+        return a.getRevision() == b.getRevision() && a.isDeleted() == b.isDeleted()
+                && Objects.equals(a.getWebsite(), b.getWebsite())
+                && Objects.equals(a.getUsername(), b.getUsername())
+                && Objects.equals(a.getPassword(), b.getPassword());
+    }
+
+    static boolean sameNote(NoteEntry a, NoteEntry b) {
+        return a.getRevision() == b.getRevision() && a.isDeleted() == b.isDeleted()
+                && Objects.equals(a.getTitle(), b.getTitle())
+                && Objects.equals(a.getContent(), b.getContent());
+    }
+
+    private static <T extends Versioned> Map<String, T> byId(List<T> items) {
+        Map<String, T> byId = new LinkedHashMap<>();
+        for (T item : items) {
+            byId.put(item.getId(), item);
+        }
+        return byId;
+    }
+
+    private Side open(File file, EncryptedVaultData template, boolean journalled) throws IOException {
+        EncryptedVaultData header = new EncryptedVaultData(null, null, 0, null, 0, List.of(), List.of());
+        if (file.exists()) {
+            if (!SegmentedVaultFormat.isManifest(file)) {
+                throw new IOException("synchronizacja wymaga bazy w formacie segmentowym: " + file.getName());
+            }
+            SegmentedVaultFormat format = SegmentedVaultFormat.open(file, header);
+            if (!journalled) {
+                int[] pending = new int[1];
+                VaultJournal.replay(VaultService.journalPath(file), header.generation, (payload, aad) -> pending[0]++);
+                if (pending[0] > 0) {
+                    throw new IOException("baza " + file.getName() + " ma niezapisane zmiany w dzienniku");
+                }
+            }
+            return new Side(file, header, format, true);
+        }
+        if (template == null) {
+            throw new IOException("nie ma pliku bazy: " + file.getName());
+        }
+        header.salt = template.salt;
+        header.iv = template.iv;
+        header.iterations = template.iterations;
+        header.wrappedKey = template.wrappedKey;
+        return new Side(file, header, new SegmentedVaultFormat(file), false);
+    }
+
+    private void write(Side side, SecretKeySpec key) throws IOException {
+        side.header().generation++;
+        side.format().write(side.header(), encryptionService, key);
+    }
+}
@@ -0,0 +1,189 @@
+package com.kesierzg.securevault.service;
+
+import com.kesierzg.securevault.diagnostics.Operation;
+import com.kesierzg.securevault.diagnostics.VaultMetrics;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+class VaultWriter implements Closeable {
+
+    private static final long DEBOUNCE_MILLIS = 250;
+    private static final long RETRY_MILLIS = 2000;
+
+    interface SnapshotTask {
+        void write(File file) throws IOException;
+    }
+
+    private final File file;
+    private final Path journalPath;
+    private final ScheduledExecutorService executor;
+    private final List<Item> pending = new ArrayList<>();
+    private ScheduledFuture<?> scheduled;
+    private VaultJournal journal;
+    private final Consumer<IOException> failureListener;
+    private volatile IOException failure;
+
+    VaultWriter(File file, Path journalPath, VaultJournal journal, Consumer<IOException> failureListener) {
+        this.file = file;
+        this.journalPath = journalPath;
+        this.journal = journal;
+        this.failureListener = failureListener;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "vault-writer");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    IOException getFailure() {
+        return failure;
+    }
+
+    synchronized void append(byte[] frame) {
+        pending.add(new Item(frame, 0, null));
+        schedule(DEBOUNCE_MILLIS);
+    }
+
+    synchronized void snapshot(long generation, SnapshotTask task) {
+        pending.add(new Item(null, generation, task));
+        schedule(DEBOUNCE_MILLIS);
+    }
+
+    CompletableFuture<Void> flush() {
+        return exclusive(() -> null);
+    }
+
+    <T> CompletableFuture<T> exclusive(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                drain();
+                result.complete(task.call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private void schedule(long delayMillis) {
+        if (scheduled == null) {
+            scheduled = executor.schedule(this::drainScheduled, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void drainScheduled() {
+        synchronized (this) {
+            scheduled = null;
+        }
+        try {
+            drain();
+        } catch (IOException e) {
+            boolean first = failure == null;
+            failure = e;
+            synchronized (this) {
+                schedule(RETRY_MILLIS);
+            }
+            if (first) {
+                failureListener.accept(e);
+            }
+        }
+    }
+
+    private void drain() throws IOException {
+        List<Item> batch;
+        synchronized (this) {
+            batch = new ArrayList<>(pending);
+            pending.clear();
+        }
+        int lastSnapshot = -1;
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i).snapshot != null) {
+                lastSnapshot = i;
+            }
+        }
+        int written = 0;
+        try {
+            if (lastSnapshot >= 0) {
+                Item snapshot = batch.get(lastSnapshot);
+                appendFrames(batch, 0, lastSnapshot);
+                written = lastSnapshot;
+                snapshot.snapshot.write(file);
+                if (journal != null) {
+                    journal.close();
+                }
+                journal = VaultJournal.create(journalPath, snapshot.generation);
+                written = lastSnapshot + 1;
+            }
+            appendFrames(batch, written, batch.size());
+            written = batch.size();
+            failure = null;
+        } finally {
+            if (written < batch.size()) {
+                synchronized (this) {
+                    pending.addAll(0, batch.subList(written, batch.size()));
+                }
+            }
+        }
+    }
+
+    private void appendFrames(List<Item> batch, int from, int to) throws IOException {
+        List<byte[]> frames = new ArrayList<>();
+        for (Item item : batch.subList(from, to)) {
+            if (item.frame != null) {
+                frames.add(item.frame);
+            }
+        }
+        if (frames.isEmpty()) {
+            return;
+        }
+        if (journal == null) {
+            throw new IOException("brak dziennika dla " + file.getName());
+        }
+        try (VaultMetrics.Timer timer = VaultMetrics.start(Operation.JOURNAL_APPEND)) {
+            timer.items(frames.size());
+            journal.append(frames);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush().join();
+        } catch (Exception e) {
+            throw new IOException("nie udao sie zapisac zmian", e.getCause());
+        } finally {
+            executor.shutdown();
+            if (journal != null) {
+                journal.close();
+            }
+        }
+    }
+
+    private static class Item {
+        final byte[] frame;
+        final long generation;
+        final SnapshotTask snapshot;
+
+        Item(byte[] frame, long generation, SnapshotTask snapshot) {
+            this.frame = frame;
+            this.generation = generation;
+            this.snapshot = snapshot;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.kesierzg.securevault;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class OrderedIdsTest {
+
+    @Test
+    void selectsAndRanksInInsertionOrder() {
+        OrderedIds ids = new OrderedIds(List.of("a", "b", "c", "d"));
+        assertEquals(4, ids.size());
+        assertEquals("a", ids.get(0));
+        assertEquals("d", ids.get(3));
+        assertEquals(2, ids.indexOf("c"));
+        assertTrue(ids.remove("b"));
+        assertEquals("c", ids.get(1));
+        assertEquals(1, ids.indexOf("c"));
+        assertEquals(-1, ids.indexOf("b"));
+        assertEquals(List.of("a", "c", "d"), ids.toList());
+    }
+
+    @Test
+    void rejectsDuplicatesMissingIdsAndOutOfRangeIndexes() {
+        OrderedIds ids = new OrderedIds(List.of("a"));
+        assertFalse(ids.add("a"));
+        assertFalse(ids.remove("x"));
+        assertThrows(IndexOutOfBoundsException.class, () -> ids.get(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> ids.get(-1));
+        ids.clear();
+        assertEquals(0, ids.size());
+        assertThrows(IndexOutOfBoundsException.class, () -> ids.get(0));
+        assertTrue(ids.add("a"));
+        assertEquals("a", ids.get(0));
+    }
+
+    @Test
+    void matchesListThroughGrowthRemovalsAndCompaction() {
+        Random random = new Random(42);
+        List<String> expected = new ArrayList<>();
+        List<String> initial = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            initial.add("init" + i);
+        }
+        expected.addAll(initial);
+        OrderedIds ids = new OrderedIds(initial);
+        int next = 0;
+        for (int step = 0; step < 20_000; step++) {
+            boolean grow = step < 6000 ? random.nextInt(4) != 0 : random.nextInt(4) == 0;
+            if (grow || expected.isEmpty()) {
+                String id = "id" + next++;
+                expected.add(id);
+                assertTrue(ids.add(id));
+            } else {
+                String id = expected.remove(random.nextInt(expected.size()));
+                assertTrue(ids.remove(id));
+            }
+            if (step % 500 == 0 || step == 19_999) {
+                assertSame(expected, ids);
+            }
+        }
+    }
+
+    private static void assertSame(List<String> expected, OrderedIds ids) {
+        assertEquals(expected.size(), ids.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), ids.get(i));
+            assertEquals(i, ids.indexOf(expected.get(i)));
+        }
+        assertEquals(expected, ids.toList());
+    }
+}
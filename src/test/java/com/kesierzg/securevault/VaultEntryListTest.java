@@ -0,0 +1,103 @@
+package com.kesierzg.securevault;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.kesierzg.securevault.model.PasswordEntry;
+import com.kesierzg.securevault.service.VaultChange;
+import com.kesierzg.securevault.service.VaultService;
+import java.util.ArrayList;
+import java.util.List;
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class VaultEntryListTest {
+
+    private VaultService vault;
+    private VaultEntryList list;
+    private final List<VaultChange> changes = new ArrayList<>();
+    private final List<String> events = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        vault = new VaultService("haslo", 1000);
+        vault.addEntry("a.pl", "ua", "pa");
+        vault.addEntry("b.pl", "ub", "pb");
+        vault.addEntry("c.pl", "uc", "pc");
+        list = new VaultEntryList(vault);
+        list.dispose();
+        vault.addListener(changes::add);
+        list.addListener((ListChangeListener<PasswordEntry>) change -> {
+            while (change.next()) {
+                if (change.wasReplaced()) {
+                    events.add("set " + change.getFrom() + " " + change.getRemoved().get(0).getWebsite());
+                } else if (change.wasAdded()) {
+                    events.add("add " + change.getFrom() + ".." + change.getTo());
+                } else if (change.wasRemoved()) {
+                    events.add("remove " + change.getFrom() + " x" + change.getRemovedSize());
+                }
+            }
+        });
+    }
+
+    private void deliver() {
+        changes.forEach(list::apply);
+        changes.clear();
+    }
+
+    private List<String> websites() {
+        List<String> websites = new ArrayList<>();
+        for (PasswordEntry entry : list) {
+            websites.add(entry.getWebsite());
+        }
+        return websites;
+    }
+
+    @Test
+    void startsWithSubscribedEntries() {
+        assertEquals(List.of("a.pl", "b.pl", "c.pl"), websites());
+        assertEquals("pb", list.get(1).getPassword());
+    }
+
+    @Test
+    void appendsBatchAsOneAddition() {
+        vault.addEntries(List.of(new PasswordEntry("d.pl", "ud", "pd"), new PasswordEntry("e.pl", "ue", "pe")));
+        assertEquals(1, changes.size());
+        deliver();
+        assertEquals(List.of("add 3..5"), events);
+        assertEquals(List.of("a.pl", "b.pl", "c.pl", "d.pl", "e.pl"), websites());
+    }
+
+    @Test
+    void replacesEditedRowInPlace() {
+        assertEquals("b.pl", list.get(1).getWebsite());
+        vault.editEntry("b.pl", "bb.pl", "ub", "nowe");
+        deliver();
+        assertEquals(List.of("set 1 b.pl"), events);
+        assertEquals("bb.pl", list.get(1).getWebsite());
+        assertEquals("nowe", list.get(1).getPassword());
+    }
+
+    @Test
+    void removesRowAtItsCurrentIndex() {
+        vault.removeEntryByWebsite("a.pl");
+        vault.removeEntryByWebsite("c.pl");
+        deliver();
+        assertEquals(List.of("remove 0 x1", "remove 1 x1"), events);
+        assertEquals(List.of("b.pl"), websites());
+        assertEquals(vault.getEntryIds().get(0), list.get(0).getId());
+    }
+
+    @Test
+    void clearsAllRowsAndIgnoresEmptyChange() {
+        VaultChange change = new VaultChange();
+        list.apply(change);
+        assertTrue(events.isEmpty());
+        vault.clearAll();
+        deliver();
+        assertEquals(List.of("remove 0 x3"), events);
+        assertEquals(0, list.size());
+        assertTrue(vault.getEntryIds().isEmpty());
+    }
+}
@@ -0,0 +1,98 @@
+package com.kesierzg.securevault.audit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BreachCorpusTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void findsEveryHashIncludingFirstAndLast() throws Exception {
+        TreeMap<String, Integer> hashes = new TreeMap<>();
+        for (int i = 0; i < 500; i++) {
+            hashes.put(HexFormat.of().withUpperCase().formatHex(sha1("haslo" + i)), i + 1);
+        }
+        StringBuilder text = new StringBuilder();
+        hashes.forEach((hash, count) -> text.append(hash).append(':').append(count).append('\n'));
+        try (BreachCorpus corpus = open(text.toString())) {
+            for (var hash : hashes.entrySet()) {
+                assertEquals(hash.getValue(), corpus.count(HexFormat.of().parseHex(hash.getKey())), hash.getKey());
+            }
+        }
+    }
+
+    @Test
+    void missesHashesOutsideAndBetweenLines() throws Exception {
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            lines.add(hash(i * 10) + ":" + i);
+        }
+        try (BreachCorpus corpus = open(String.join("\n", lines) + "\n")) {
+            assertEquals(1, corpus.count(bytes(10)));
+            assertEquals(5, corpus.count(bytes(50)));
+            assertEquals(0, corpus.count(bytes(0)));
+            assertEquals(0, corpus.count(bytes(9)));
+            assertEquals(0, corpus.count(bytes(11)));
+            assertEquals(0, corpus.count(bytes(35)));
+            assertEquals(0, corpus.count(bytes(51)));
+            assertEquals(0, corpus.count(HexFormat.of().parseHex("F".repeat(40))));
+        }
+    }
+
+    @Test
+    void handlesEmptyAndSingleLineCorpus() throws Exception {
+        try (BreachCorpus corpus = open("")) {
+            assertEquals(0, corpus.size());
+            assertEquals(0, corpus.count(bytes(1)));
+        }
+        try (BreachCorpus corpus = open(hash(7) + ":3")) {
+            assertEquals(3, corpus.count(bytes(7)));
+            assertEquals(0, corpus.count(bytes(6)));
+            assertEquals(0, corpus.count(bytes(8)));
+        }
+    }
+
+    @Test
+    void acceptsLowercaseCrlfAndMissingCounts() throws Exception {
+        String text = hash(1).toLowerCase() + ":12\r\n" + hash(2) + "\r\n" + hash(3) + ":0\r\n" + hash(4) + ":99999999999\r\n";
+        try (BreachCorpus corpus = open(text)) {
+            assertEquals(12, corpus.count(bytes(1)));
+            assertEquals(1, corpus.count(bytes(2)));
+            assertEquals(1, corpus.count(bytes(3)));
+            assertEquals(Integer.MAX_VALUE, corpus.count(bytes(4)));
+            assertEquals(0, corpus.count(bytes(5)));
+        }
+    }
+
+    private BreachCorpus open(String text) throws IOException {
+        Path path = Files.writeString(dir.resolve("corpus.txt"), text, StandardCharsets.US_ASCII);
+        return BreachCorpus.open(path);
+    }
+
+    private static String hash(int value) {
+        return String.format("%040X", BigInteger.valueOf(value));
+    }
+
+    private static byte[] bytes(int value) {
+        return HexFormat.of().parseHex(hash(value));
+    }
+
+    private static byte[] sha1(String password) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-1").digest(password.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,155 @@
+package com.kesierzg.securevault.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.kesierzg.securevault.model.NoteEntry;
+import com.kesierzg.securevault.model.PasswordEntry;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CompressedVaultFormatTest {
+
+    private final EncryptionService encryptionService = new EncryptionService();
+    private final SecretKeySpec key = encryptionService.generateDataKey();
+    private final Random random = new Random(42);
+
+    @TempDir
+    Path dir;
+
+    private File file;
+    private EncryptedVaultData data;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        List<PasswordEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            entries.add(new PasswordEntry(UUID.randomUUID().toString(), "site" + i + ".pl", secret(48), secret(200), i, false));
+        }
+        entries.add(new PasswordEntry(UUID.randomUUID().toString(), "ż".repeat(40_000), secret(16), secret(16), 1, false));
+        entries.add(new PasswordEntry(UUID.randomUUID().toString(), "", secret(0), secret(0), 9, true));
+        List<NoteEntry> notes = new ArrayList<>();
+        notes.add(new NoteEntry(UUID.randomUUID().toString(), "tytuł", "treść notatki", 3, false));
+        data = new EncryptedVaultData(encryptionService.generateSalt(), encryptionService.generateIv(), 1000, null,
+                entries, notes, 17);
+        file = dir.resolve("vault.dat").toFile();
+        CompressedVaultFormat.write(file, data, encryptionService, key);
+    }
+
+    private String secret(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    private EncryptedVaultData read(SecretKeySpec readKey) throws IOException {
+        EncryptedVaultData read = CompressedVaultFormat.readHeader(file);
+        CompressedVaultFormat.readPayload(file, read, encryptionService, readKey);
+        return read;
+    }
+
+    @Test
+    void roundTrips() throws IOException {
+        assertTrue(CompressedVaultFormat.isCompressed(file));
+        EncryptedVaultData read = read(key);
+        assertEquals(17, read.generation);
+        assertEquals(1000, read.iterations);
+        assertEquals(data.salt, read.salt);
+        assertEquals(data.entries.size(), read.entries.size());
+        for (int i = 0; i < data.entries.size(); i++) {
+            PasswordEntry expected = data.entries.get(i);
+            PasswordEntry actual = read.entries.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getWebsite(), actual.getWebsite());
+            assertEquals(expected.getUsername(), actual.getUsername());
+            assertEquals(expected.getPassword(), actual.getPassword());
+            assertEquals(expected.getRevision(), actual.getRevision());
+            assertEquals(expected.isDeleted(), actual.isDeleted());
+        }
+        assertEquals("treść notatki", read.notes.get(0).getContent());
+    }
+
+    @Test
+    void rejectsWrongKey() {
+        assertThrows(IOException.class, () -> read(encryptionService.generateDataKey()));
+    }
+
+    @Test
+    void rejectsFlippedByte() throws IOException {
+        List<Long> chunks = chunkOffsets();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long offset = chunks.get(chunks.size() - 1) + 5 + 10;
+            raf.seek(offset);
+            int b = raf.read();
+            raf.seek(offset);
+            raf.write(b ^ 1);
+        }
+        assertThrows(IOException.class, () -> read(key));
+    }
+
+    @Test
+    void rejectsChangedHeader() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(10);
+            raf.writeLong(18);
+        }
+        assertThrows(IOException.class, () -> read(key));
+    }
+
+    @Test
+    void rejectsTruncationAtChunkBoundary() throws IOException {
+        List<Long> chunks = chunkOffsets();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(chunks.get(chunks.size() - 1));
+        }
+        assertThrows(IOException.class, () -> read(key));
+    }
+
+    @Test
+    void rejectsEarlierChunkMarkedLast() throws IOException {
+        List<Long> chunks = chunkOffsets();
+        assertTrue(chunks.size() > 3);
+        long cut = chunks.get(chunks.size() - 1);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(chunks.get(chunks.size() - 2));
+            raf.write(1);
+            raf.setLength(cut);
+        }
+        assertThrows(IOException.class, () -> read(key));
+    }
+
+    private List<Long> chunkOffsets() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        buffer.position(4 + 2 + 4 + 8);
+        for (int i = 0; i < 3; i++) {
+            buffer.position(buffer.position() + 2 + buffer.getShort(buffer.position()));
+        }
+        buffer.position(buffer.position() + 8);
+        List<Long> offsets = new ArrayList<>();
+        for (int section = 0; section < 2; section++) {
+            boolean last = false;
+            while (!last) {
+                offsets.add((long) buffer.position());
+                last = buffer.get() != 0;
+                int length = buffer.getInt();
+                buffer.position(buffer.position() + length);
+            }
+        }
+        assertEquals(buffer.limit(), buffer.position());
+        return offsets;
+    }
+}
@@ -0,0 +1,69 @@
+package com.kesierzg.securevault.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.Test;
+
+class EncryptionServiceTest {
+
+    private final EncryptionService encryptionService = new EncryptionService();
+    private final SecretKeySpec key = encryptionService.generateDataKey();
+    private final byte[] iv = encryptionService.generateIv();
+    private final byte[] aad = EncryptionService.fieldAad("id-1", VaultService.PASSWORD);
+
+    @Test
+    void fieldRoundTrips() throws GeneralSecurityException {
+        String sealed = encryptionService.encryptField("zażółć gęślą jaźń", key, aad);
+        assertEquals("zażółć gęślą jaźń", encryptionService.decryptField(sealed, key, null, aad));
+    }
+
+    @Test
+    void usesFreshNonceForEachField() throws GeneralSecurityException {
+        assertNotEquals(encryptionService.encryptField("same", key, aad), encryptionService.encryptField("same", key, aad));
+    }
+
+    @Test
+    void rejectsFieldMovedToAnotherEntryOrField() throws GeneralSecurityException {
+        String sealed = encryptionService.encryptField("secret", key, aad);
+        assertThrows(GeneralSecurityException.class, () -> encryptionService.decryptField(sealed, key, null,
+                EncryptionService.fieldAad("id-2", VaultService.PASSWORD)));
+        assertThrows(GeneralSecurityException.class, () -> encryptionService.decryptField(sealed, key, null,
+                EncryptionService.fieldAad("id-1", VaultService.USERNAME)));
+    }
+
+    @Test
+    void rejectsTamperedFieldWithoutCbcFallback() throws GeneralSecurityException {
+        byte[] sealed = Base64.getDecoder().decode(encryptionService.encryptField("0123456789abcdefg", key, aad));
+        assertEquals(0, sealed.length % 16);
+        sealed[sealed.length - 1] ^= 1;
+        String tampered = Base64.getEncoder().encodeToString(sealed);
+        assertThrows(GeneralSecurityException.class, () -> encryptionService.decryptField(tampered, key, null, aad));
+    }
+
+    @Test
+    void readsCbcOnlyInLegacyMode() throws Exception {
+        String cbc = encryptionService.encrypt("stare", key, iv);
+        assertThrows(GeneralSecurityException.class, () -> encryptionService.decryptField(cbc, key, null, aad));
+        assertEquals("stare", encryptionService.decryptField(cbc, key, iv, aad));
+    }
+
+    @Test
+    void sealsRecordsWithAad() throws GeneralSecurityException {
+        byte[] plain = "{\"op\":\"CLEAR\"}".getBytes(StandardCharsets.UTF_8);
+        byte[] recordAad = VaultJournal.frameAad(3, EncryptionService.sealedLength(plain.length));
+        byte[] sealed = encryptionService.seal(plain, key, recordAad);
+        assertEquals(EncryptionService.sealedLength(plain.length), sealed.length);
+        assertArrayEquals(plain, encryptionService.open(sealed, key, recordAad));
+        assertThrows(GeneralSecurityException.class, () -> encryptionService.open(sealed, key,
+                VaultJournal.frameAad(4, sealed.length)));
+        sealed[5] ^= 1;
+        assertThrows(GeneralSecurityException.class, () -> encryptionService.open(sealed, key, recordAad));
+    }
+}
@@ -0,0 +1,72 @@
+package com.kesierzg.securevault.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.List;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.Test;
+
+class FingerprintIndexTest {
+
+    private final EncryptionService encryptionService = new EncryptionService();
+
+    private FingerprintIndex index(String password) throws Exception {
+        SecretKeySpec key = encryptionService.generateKeyFromPassword(password, new byte[16], 1000);
+        return new FingerprintIndex(encryptionService.deriveSubkey(key, FingerprintIndex.KEY_LABEL));
+    }
+
+    @Test
+    void normalizesWebsite() throws Exception {
+        FingerprintIndex index = index("haslo");
+        assertEquals(index.fingerprint("github.com", "ala", "tajne"), index.fingerprint("  GitHub.COM ", "ala", "tajne"));
+    }
+
+    @Test
+    void separatesIdentityFromSecret() throws Exception {
+        FingerprintIndex index = index("haslo");
+        FingerprintIndex.Fingerprint base = index.fingerprint("github.com", "ala", "tajne");
+        FingerprintIndex.Fingerprint otherPassword = index.fingerprint("github.com", "ala", "inne");
+        assertEquals(base.identity(), otherPassword.identity());
+        assertNotEquals(base.secret(), otherPassword.secret());
+        assertNotEquals(base.identity(), index.fingerprint("github.com", "Ala", "tajne").identity());
+        assertNotEquals(index.fingerprint("ab", "c", "x").identity(), index.fingerprint("a", "bc", "x").identity());
+        assertEquals(index.fingerprint("a.pl", null, null), index.fingerprint("a.pl", "", ""));
+    }
+
+    @Test
+    void dependsOnVaultKey() throws Exception {
+        FingerprintIndex.Fingerprint first = index("haslo").fingerprint("github.com", "ala", "tajne");
+        FingerprintIndex.Fingerprint second = index("inne haslo").fingerprint("github.com", "ala", "tajne");
+        assertNotEquals(first.identity(), second.identity());
+        assertNotEquals(first.secret(), second.secret());
+        assertEquals(22, first.identity().length());
+    }
+
+    @Test
+    void tracksIdsByIdentity() throws Exception {
+        FingerprintIndex index = index("haslo");
+        FingerprintIndex.Fingerprint ala = index.fingerprint("github.com", "ala", "tajne");
+        FingerprintIndex.Fingerprint alaOther = index.fingerprint("github.com", "ala", "inne");
+        FingerprintIndex.Fingerprint ola = index.fingerprint("github.com", "ola", "tajne");
+        index.put("1", ala);
+        index.put("2", alaOther);
+        index.put("3", ola);
+        assertEquals(List.of("1", "2"), index.idsWithIdentity(ala.identity()));
+        assertEquals(alaOther.secret(), index.secretOf("2"));
+
+        index.put("2", ola);
+        assertEquals(List.of("1"), index.idsWithIdentity(ala.identity()));
+        assertEquals(List.of("3", "2"), index.idsWithIdentity(ola.identity()));
+
+        index.remove("1");
+        assertEquals(List.of(), index.idsWithIdentity(ala.identity()));
+        assertNull(index.secretOf("1"));
+        index.remove("1");
+
+        index.clear();
+        assertEquals(List.of(), index.idsWithIdentity(ola.identity()));
+        assertNull(index.secretOf("3"));
+    }
+}
@@ -0,0 +1,123 @@
+package com.kesierzg.securevault.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kesierzg.securevault.model.PasswordEntry;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LegacyFieldMigrationTest {
+
+    private static final String PASSWORD = "haslo";
+
+    private final EncryptionService encryptionService = new EncryptionService();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path dir;
+
+    private File legacy;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        byte[] salt = encryptionService.generateSalt();
+        byte[] iv = encryptionService.generateIv();
+        SecretKeySpec key = encryptionService.generateKeyFromPassword(PASSWORD, salt);
+        List<Map<String, String>> entries = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Map<String, String> entry = new LinkedHashMap<>();
+            entry.put("website", "site" + i + ".pl");
+            entry.put("username", encryptionService.encrypt("user" + i, key, iv));
+            entry.put("password", encryptionService.encrypt("pass" + i, key, iv));
+            entries.add(entry);
+        }
+        Map<String, Object> vault = new LinkedHashMap<>();
+        vault.put("salt", Base64.getEncoder().encodeToString(salt));
+        vault.put("iv", Base64.getEncoder().encodeToString(iv));
+        vault.put("entries", entries);
+        vault.put("notes", List.of(Map.of("title", "tajemnica", "content", "tresc")));
+        legacy = dir.resolve("vault.json").toFile();
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(legacy, vault);
+    }
+
+    @Test
+    void migratesBaselineVaultWithoutTouchingIt() throws IOException {
+        byte[] original = Files.readAllBytes(legacy.toPath());
+        File file = dir.resolve("vault.dat").toFile();
+        VaultService vault = VaultService.migrateFromJson(legacy, file, PASSWORD);
+        assertEquals("pass7", vault.getEntry("site7.pl").getPassword());
+        vault.close();
+        assertArrayEquals(original, Files.readAllBytes(legacy.toPath()));
+
+        VaultService reloaded = VaultService.loadFromFile(file, PASSWORD);
+        assertEquals(VaultFormat.SEGMENTED, reloaded.getFormat());
+        assertEquals(50, reloaded.getEntries().size());
+        assertEquals("user49", reloaded.getEntry("site49.pl").getUsername());
+        assertEquals("tresc", reloaded.getNotes().get(0).getContent());
+        reloaded.close();
+    }
+
+    @Test
+    void resealsBaselineVaultInPlace() throws IOException {
+        assertFalse(readData().sealedFields);
+        VaultService vault = VaultService.loadFromFile(legacy, PASSWORD);
+        assertEquals("pass3", vault.getEntry("site3.pl").getPassword());
+        vault.close();
+
+        EncryptedVaultData migrated = readData();
+        assertTrue(migrated.sealedFields);
+        assertEquals(50, migrated.entries.size());
+        for (PasswordEntry entry : migrated.entries) {
+            assertSealed(entry.getUsername());
+            assertSealed(entry.getPassword());
+        }
+        VaultService reloaded = VaultService.loadFromFile(legacy, PASSWORD);
+        assertEquals("user49", reloaded.getEntry("site49.pl").getUsername());
+        reloaded.close();
+    }
+
+    @Test
+    void rejectsCbcFieldAfterMigration() throws Exception {
+        VaultService.loadFromFile(legacy, PASSWORD).close();
+        EncryptedVaultData migrated = readData();
+        SecretKeySpec key = encryptionService.generateKeyFromPassword(PASSWORD, migrated.getSaltBytes(), migrated.iterations);
+        PasswordEntry first = migrated.entries.get(0);
+        migrated.entries.set(0, new PasswordEntry(first.getId(), first.getWebsite(), first.getUsername(),
+                encryptionService.encrypt("podmienione", key, migrated.getIvBytes()), first.getRevision(), false));
+        objectMapper.writeValue(legacy, migrated);
+
+        VaultService vault = VaultService.loadFromFile(legacy, PASSWORD);
+        try {
+            assertThrows(RuntimeException.class, () -> vault.getEntryById(first.getId()).getPassword());
+        } finally {
+            vault.close();
+        }
+    }
+
+    private EncryptedVaultData readData() throws IOException {
+        return objectMapper.readValue(legacy, EncryptedVaultData.class);
+    }
+
+    private static void assertSealed(String field) {
+        byte[] bytes = Base64.getDecoder().decode(field);
+        assertEquals('S', bytes[0]);
+        assertEquals('V', bytes[1]);
+        assertEquals(2, bytes[2]);
+    }
+}
@@ -0,0 +1,113 @@
+package com.kesierzg.securevault.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MasterPasswordTest {
+
+    private final EncryptionService encryptionService = new EncryptionService();
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void wrapsAndUnwrapsDataKey() throws Exception {
+        SecretKeySpec dataKey = encryptionService.generateDataKey();
+        byte[] salt = encryptionService.generateSalt();
+        byte[] wrapped = encryptionService.wrapKey(dataKey, encryptionService.generateKeyFromPassword("haslo", salt, 1000));
+        assertEquals(40, wrapped.length);
+        SecretKeySpec unwrapped = encryptionService.unwrapKey(wrapped, encryptionService.generateKeyFromPassword("haslo", salt, 1000));
+        assertArrayEquals(dataKey.getEncoded(), unwrapped.getEncoded());
+        SecretKeySpec wrong = encryptionService.generateKeyFromPassword("inne", salt, 1000);
+        assertThrows(GeneralSecurityException.class, () -> encryptionService.unwrapKey(wrapped, wrong));
+        wrapped[7] ^= 1;
+        SecretKeySpec right = encryptionService.generateKeyFromPassword("haslo", salt, 1000);
+        assertThrows(GeneralSecurityException.class, () -> encryptionService.unwrapKey(wrapped, right));
+    }
+
+    @Test
+    void changesPasswordWithoutRewritingEntries() throws IOException {
+        File file = dir.resolve("vault.dat").toFile();
+        VaultService vault = new VaultService("stare", 1000);
+        vault.saveToFile(file);
+        for (int i = 0; i < 500; i++) {
+            vault.addEntry("site" + i + ".pl", "user" + i, "pass" + i);
+        }
+        vault.addNote("tytul", "tresc");
+        vault.saveToFile(file);
+        List<Path> segmentsBefore = segmentFiles(file);
+
+        vault.changeMasterPassword("nowe", 2000);
+        vault.close();
+        assertEquals(segmentsBefore, segmentFiles(file));
+
+        assertThrows(RuntimeException.class, () -> VaultService.loadFromFile(file, "stare"));
+        VaultService reloaded = VaultService.loadFromFile(file, "nowe");
+        assertEquals(2000, reloaded.getIterations());
+        assertEquals(500, reloaded.getEntries().size());
+        assertEquals("pass321", reloaded.getEntry("site321.pl").getPassword());
+        assertEquals("tresc", reloaded.getNotes().get(0).getContent());
+        reloaded.close();
+    }
+
+    @Test
+    void unlockChecksPasswordAgainstWrappedKey() {
+        VaultService vault = new VaultService("haslo", 1000);
+        String id = vault.addEntry("a.pl", "u", "p");
+        vault.lock();
+        assertTrue(vault.isLocked());
+        assertThrows(RuntimeException.class, () -> vault.unlock("zle"));
+        assertTrue(vault.isLocked());
+        vault.unlock("haslo");
+        assertEquals("p", vault.getEntryById(id).getPassword());
+    }
+
+    @Test
+    void wrapsKeyOfBaselineVaultOnPasswordChange() throws Exception {
+        byte[] salt = encryptionService.generateSalt();
+        byte[] iv = encryptionService.generateIv();
+        SecretKeySpec key = encryptionService.generateKeyFromPassword("stare", salt);
+        File file = dir.resolve("vault.json").toFile();
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.writeValue(file, Map.of(
+                "salt", Base64.getEncoder().encodeToString(salt),
+                "iv", Base64.getEncoder().encodeToString(iv),
+                "entries", List.of(Map.of("website", "a.pl",
+                        "username", encryptionService.encrypt("jan", key, iv),
+                        "password", encryptionService.encrypt("tajne", key, iv)))));
+
+        VaultService vault = VaultService.loadFromFile(file, "stare");
+        vault.changeMasterPassword("nowe", 1000);
+        vault.close();
+
+        EncryptedVaultData data = objectMapper.readValue(file, EncryptedVaultData.class);
+        SecretKeySpec unwrapped = encryptionService.unwrapKey(data.getWrappedKeyBytes(),
+                encryptionService.generateKeyFromPassword("nowe", data.getSaltBytes(), 1000));
+        assertArrayEquals(key.getEncoded(), unwrapped.getEncoded());
+        VaultService reloaded = VaultService.loadFromFile(file, "nowe");
+        assertEquals("tajne", reloaded.getEntry("a.pl").getPassword());
+        reloaded.close();
+    }
+
+    private static List<Path> segmentFiles(File file) throws IOException {
+        try (Stream<Path> files = Files.list(SegmentedVaultFormat.segmentDirectory(file))) {
+            return files.sorted().toList();
+        }
+    }
+}
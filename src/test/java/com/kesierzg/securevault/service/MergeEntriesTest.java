@@ -0,0 +1,139 @@
+package com.kesierzg.securevault.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kesierzg.securevault.model.PasswordEntry;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MergeEntriesTest {
+
+    @TempDir
+    Path dir;
+
+    private VaultService vault;
+    private String existingId;
+
+    @BeforeEach
+    void setUp() {
+        vault = new VaultService("haslo", 1000);
+        existingId = vault.addEntry("github.com", "ala", "tajne");
+        vault.addEntry("gitlab.com", "ola", "haslo1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        vault.close();
+    }
+
+    private static PasswordEntry entry(String website, String username, String password) {
+        return new PasswordEntry(website, username, password);
+    }
+
+    private List<String> passwordsOf(String website) {
+        List<String> passwords = new ArrayList<>();
+        vault.forEachDecrypted(entry -> {
+            if (entry.getWebsite().equals(website)) {
+                passwords.add(entry.getPassword());
+            }
+        });
+        passwords.sort(null);
+        return passwords;
+    }
+
+    private static void assertResult(MergeResult result, int added, int identical, int conflicts, int overwritten) {
+        assertEquals(List.of(added, identical, conflicts, overwritten),
+                List.of(result.getAdded(), result.getIdentical(), result.getConflicts(), result.getOverwritten()));
+    }
+
+    @Test
+    void skipsIdenticalEntriesWithNormalizedWebsite() {
+        MergeResult result = vault.mergeEntries(List.of(
+                entry("github.com", "ala", "tajne"),
+                entry(" GitHub.com ", "ala", "tajne"),
+                entry("example.com", "ala", "tajne")), ConflictPolicy.KEEP_EXISTING);
+        assertResult(result, 1, 2, 0, 0);
+        assertEquals(3, vault.getEntries().size());
+    }
+
+    @Test
+    void keepsExistingOnConflict() {
+        MergeResult result = vault.mergeEntries(List.of(entry("github.com", "ala", "nowe")), ConflictPolicy.KEEP_EXISTING);
+        assertResult(result, 0, 0, 1, 0);
+        assertEquals(List.of("tajne"), passwordsOf("github.com"));
+    }
+
+    @Test
+    void overwritesExistingOnConflict() {
+        MergeResult result = vault.mergeEntries(List.of(entry("github.com", "ala", "nowe")), ConflictPolicy.OVERWRITE);
+        assertResult(result, 0, 0, 1, 1);
+        assertEquals(2, vault.getEntries().size());
+        assertEquals("nowe", vault.getEntryById(existingId).getPassword());
+    }
+
+    @Test
+    void keepsBothOnConflict() {
+        MergeResult result = vault.mergeEntries(List.of(entry("github.com", "ala", "nowe")), ConflictPolicy.KEEP_BOTH);
+        assertResult(result, 1, 0, 1, 0);
+        assertEquals(List.of("nowe", "tajne"), passwordsOf("github.com"));
+        assertEquals("tajne", vault.getEntryById(existingId).getPassword());
+    }
+
+    @Test
+    void dedupsWithinOneBatch() {
+        MergeResult result = vault.mergeEntries(List.of(
+                entry("example.com", "ala", "a"),
+                entry("example.com", "ala", "a"),
+                entry("example.com", "ala", "b")), ConflictPolicy.KEEP_BOTH);
+        assertResult(result, 2, 1, 1, 0);
+        assertEquals(List.of("a", "b"), passwordsOf("example.com"));
+    }
+
+    @Test
+    void seesEditsAndRemovalsMadeAfterFirstMerge() {
+        vault.mergeEntries(List.of(entry("github.com", "ala", "tajne")), ConflictPolicy.KEEP_EXISTING);
+        vault.editEntryById(existingId, "github.com", "ala", "zmienione");
+        assertResult(vault.mergeEntries(List.of(entry("github.com", "ala", "zmienione")), ConflictPolicy.KEEP_EXISTING), 0, 1, 0, 0);
+
+        vault.removeEntryById(existingId);
+        assertResult(vault.mergeEntries(List.of(entry("github.com", "ala", "zmienione")), ConflictPolicy.KEEP_EXISTING), 1, 0, 0, 0);
+    }
+
+    @Test
+    void dedupsAcrossStreamedBatches() throws IOException {
+        MergeResult result = vault.mergeEntries(sink -> {
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < 1500; i++) {
+                    sink.accept(entry("site" + i + ".pl", "user", "pass" + i));
+                }
+            }
+        }, ConflictPolicy.KEEP_BOTH, ProgressListener.NONE);
+        assertResult(result, 1500, 1500, 0, 0);
+        assertEquals(1502, vault.getEntries().size());
+    }
+
+    @Test
+    void mergesBitwardenExport() throws IOException {
+        File file = dir.resolve("bitwarden.json").toFile();
+        new ObjectMapper().writeValue(file, Map.of("items", List.of(
+                Map.of("type", 1, "name", "GitHub.com", "login", Map.of("username", "ala", "password", "tajne")),
+                Map.of("type", 1, "name", "gitlab.com", "login", Map.of("username", "ola", "password", "inne")),
+                Map.of("type", 1, "name", "example.com", "login", Map.of("username", "ela", "password", "x")),
+                Map.of("type", 2, "name", "notatka", "notes", "tresc"))));
+        ImportService importService = new ImportService();
+        MergeResult result = vault.mergeEntries(sink -> importService.importFromBitwarden(file, sink),
+                ConflictPolicy.OVERWRITE, ProgressListener.NONE);
+        assertResult(result, 1, 1, 1, 1);
+        assertEquals(List.of("inne"), passwordsOf("gitlab.com"));
+        assertEquals(3, vault.getEntries().size());
+    }
+}
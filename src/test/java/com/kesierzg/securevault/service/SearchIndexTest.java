@@ -0,0 +1,86 @@
+package com.kesierzg.securevault.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SearchIndexTest {
+
+    private final SearchIndex index = new SearchIndex();
+
+    @Test
+    void ranksFieldPrefixThenWordPrefixThenSubstring() {
+        index.put("word", "mail.google.com");
+        index.put("substring", "gmail.com");
+        index.put("field", "google.pl");
+        index.put("other", "onet.pl");
+        assertEquals(List.of("field", "word"), index.search("goo", 10));
+        assertEquals(List.of("word", "substring"), index.search("mail", 10));
+    }
+
+    @Test
+    void ordersSubstringMatchesByShortestField() {
+        index.put("long", "xxxxxxxxxxbank");
+        index.put("short", "xbank");
+        index.put("middle", "xxxxbank");
+        assertEquals(List.of("short", "middle", "long"), index.search("ank", 10));
+    }
+
+    @Test
+    void matchesAnyFieldIgnoringCaseAndSurroundingSpaces() {
+        index.put("a", "Allegro.pl", "Jan.Kowalski@Example.com");
+        assertEquals(List.of("a"), index.search("  KOWAL ", 10));
+        assertEquals(List.of("a"), index.search("example", 10));
+        assertEquals(List.of("a"), index.search("owals", 10));
+    }
+
+    @Test
+    void shortQueriesDoNotFallBackToSubstrings() {
+        index.put("a", "gmail.com");
+        assertTrue(index.search("ai", 10).isEmpty());
+        assertEquals(List.of("a"), index.search("gm", 10));
+        assertTrue(index.search("", 10).isEmpty());
+        assertTrue(index.search("gmail", 0).isEmpty());
+    }
+
+    @Test
+    void returnsEachMatchOnceAndRespectsLimit() {
+        for (int i = 0; i < 50; i++) {
+            index.put("id" + i, "shop" + i + ".pl", "shop");
+        }
+        List<String> found = index.search("shop", 20);
+        assertEquals(20, found.size());
+        assertEquals(20, found.stream().distinct().count());
+        assertEquals(1, index.search("shop7.pl", 10).size());
+    }
+
+    @Test
+    void putReplacesAndRemoveHides() {
+        index.put("a", "stara-nazwa.pl");
+        index.put("a", "nowa-nazwa.pl");
+        assertTrue(index.search("stara", 10).isEmpty());
+        assertEquals(List.of("a"), index.search("nowa", 10));
+        index.remove("a");
+        assertTrue(index.search("nazwa", 10).isEmpty());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void staysCorrectAcrossCompaction() {
+        for (int i = 0; i < 3000; i++) {
+            index.put("id" + i, "site" + i + ".pl");
+        }
+        for (int i = 0; i < 3000; i++) {
+            if (i % 6 != 0) {
+                index.remove("id" + i);
+            }
+        }
+        assertEquals(500, index.size());
+        assertEquals(List.of("id1200"), index.search("site1200.", 10));
+        assertTrue(index.search("site1201.", 10).isEmpty());
+        assertEquals(500, index.search("site", 1000).size());
+        assertEquals(List.of("id2994"), index.search("e2994", 10));
+    }
+}
@@ -0,0 +1,110 @@
+package com.kesierzg.securevault.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.util.List;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SegmentedVaultFormatTest {
+
+    private static final String PASSWORD = "haslo";
+
+    private final EncryptionService encryptionService = new EncryptionService();
+
+    @TempDir
+    Path dir;
+
+    private File file;
+    private String id;
+
+    @BeforeEach
+    void setUp() {
+        file = dir.resolve("vault.dat").toFile();
+        VaultService vault = new VaultService(PASSWORD, 1000);
+        id = vault.addEntry("example.com", "user", "secret");
+        vault.addNote("tytul", "tresc");
+        vault.saveToFile(file);
+        vault.close();
+    }
+
+    private SecretKeySpec key(EncryptedVaultData header) throws Exception {
+        SecretKeySpec passwordKey = encryptionService.generateKeyFromPassword(PASSWORD, header.getSaltBytes(), header.iterations);
+        return encryptionService.unwrapKey(header.getWrappedKeyBytes(), passwordKey);
+    }
+
+    private static EncryptedVaultData header() {
+        return new EncryptedVaultData(null, null, 0, null, 0, List.of(), List.of());
+    }
+
+    @Test
+    void bindsSegmentToIndexAndGeneration() throws Exception {
+        EncryptedVaultData header = header();
+        SegmentedVaultFormat.open(file, header);
+        SecretKeySpec key = key(header);
+        int index = SegmentedVaultFormat.segmentOf(id);
+        byte[] sealed = Files.readAllBytes(SegmentedVaultFormat.segmentDirectory(file)
+                .resolve(String.format("segment-%02d-%d.bin", index, header.generation)));
+
+        encryptionService.open(sealed, key, SegmentedVaultFormat.segmentAad(index, header.generation));
+        assertThrows(GeneralSecurityException.class,
+                () -> encryptionService.open(sealed, key, SegmentedVaultFormat.segmentAad(index + 1, header.generation)));
+        assertThrows(GeneralSecurityException.class,
+                () -> encryptionService.open(sealed, key, SegmentedVaultFormat.segmentAad(index, header.generation - 1)));
+    }
+
+    @Test
+    void rejectsTamperedManifest() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 40);
+            int b = raf.read();
+            raf.seek(raf.length() - 40);
+            raf.write(b ^ 1);
+        }
+        RuntimeException e = assertThrows(RuntimeException.class, () -> VaultService.loadFromFile(file, PASSWORD));
+        assertInstanceOf(IOException.class, e.getCause());
+        assertEquals("podpis manifestu sie nie zgadza", e.getCause().getMessage());
+    }
+
+    @Test
+    void readsSegmentsOnlyAfterVerification() throws Exception {
+        EncryptedVaultData header = header();
+        SegmentedVaultFormat format = SegmentedVaultFormat.open(file, header);
+        SecretKeySpec key = key(header);
+        int index = SegmentedVaultFormat.segmentOf(id);
+        assertThrows(IllegalStateException.class, () -> format.readSegment(index, encryptionService, key));
+        assertThrows(IOException.class, () -> format.verify(encryptionService, encryptionService.generateDataKey()));
+
+        format.verify(encryptionService, key);
+        assertEquals("example.com", format.readSegment(index, encryptionService, key).entries().get(0).getWebsite());
+    }
+
+    @Test
+    void copiedSegmentsKeepOpening() throws Exception {
+        File copy = dir.resolve("copy/vault.dat").toFile();
+        copy.getParentFile().mkdirs();
+        VaultService vault = VaultService.loadFromFile(file, PASSWORD);
+        vault.syncWith(copy);
+        vault.editEntryById(id, "example.com", "user", "changed");
+        vault.syncWith(copy);
+        vault.close();
+
+        VaultService copied = VaultService.loadFromFile(copy, PASSWORD);
+        try {
+            assertEquals("changed", copied.getEntryById(id).getPassword());
+            assertEquals("tresc", copied.getNotes().get(0).getContent());
+        } finally {
+            copied.close();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.kesierzg.securevault.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class VaultJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private static byte[] frame(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> replay(Path path, long minGeneration, VaultJournal.State[] state) throws IOException {
+        List<String> frames = new ArrayList<>();
+        state[0] = VaultJournal.replay(path, minGeneration, (payload, aad) -> frames.add(new String(payload, StandardCharsets.UTF_8)));
+        return frames;
+    }
+
+    @Test
+    void replaysFramesInOrder() throws IOException {
+        Path path = dir.resolve("vault.dat.journal");
+        try (VaultJournal journal = VaultJournal.create(path, 7)) {
+            journal.append(List.of(frame("a"), frame("bb")));
+            journal.append(List.of(frame("ccc")));
+        }
+        VaultJournal.State[] state = new VaultJournal.State[1];
+        assertEquals(List.of("a", "bb", "ccc"), replay(path, 7, state));
+        assertEquals(7, state[0].generation);
+        assertEquals(Files.size(path), state[0].validLength);
+    }
+
+    @Test
+    void passesFrameHeaderAsAad() throws IOException {
+        Path path = dir.resolve("vault.dat.journal");
+        try (VaultJournal journal = VaultJournal.create(path, 3)) {
+            journal.append(List.of(frame("abcd")));
+        }
+        List<byte[]> aads = new ArrayList<>();
+        VaultJournal.replay(path, 0, (payload, aad) -> aads.add(aad));
+        assertArrayEquals(VaultJournal.frameAad(3, 4), aads.get(0));
+    }
+
+    @Test
+    void stopsAtCorruptFrame() throws IOException {
+        Path path = dir.resolve("vault.dat.journal");
+        long goodLength;
+        try (VaultJournal journal = VaultJournal.create(path, 1)) {
+            journal.append(List.of(frame("first")));
+            goodLength = journal.size();
+            journal.append(List.of(frame("second"), frame("third")));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.seek(goodLength + 4);
+            file.write('S');
+        }
+        VaultJournal.State[] state = new VaultJournal.State[1];
+        assertEquals(List.of("first"), replay(path, 1, state));
+        assertEquals(goodLength, state[0].validLength);
+    }
+
+    @Test
+    void ignoresTornTail() throws IOException {
+        Path path = dir.resolve("vault.dat.journal");
+        long goodLength;
+        try (VaultJournal journal = VaultJournal.create(path, 1)) {
+            journal.append(List.of(frame("first")));
+            goodLength = journal.size();
+            journal.append(List.of(frame("second")));
+        }
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        VaultJournal.State[] state = new VaultJournal.State[1];
+        assertEquals(List.of("first"), replay(path, 1, state));
+        assertEquals(goodLength, state[0].validLength);
+
+        try (VaultJournal journal = VaultJournal.open(path, state[0])) {
+            journal.append(List.of(frame("again")));
+        }
+        assertEquals(List.of("first", "again"), replay(path, 1, state));
+    }
+
+    @Test
+    void skipsJournalOlderThanSnapshot() throws IOException {
+        Path path = dir.resolve("vault.dat.journal");
+        try (VaultJournal journal = VaultJournal.create(path, 4)) {
+            journal.append(List.of(frame("stale")));
+        }
+        VaultJournal.State[] state = new VaultJournal.State[1];
+        assertEquals(List.of(), replay(path, 5, state));
+        assertNull(state[0]);
+        assertEquals(List.of("stale"), replay(path, 4, state));
+        assertNotNull(state[0]);
+    }
+
+    @Test
+    void recoversUnsnapshottedChanges() {
+        File file = dir.resolve("vault.dat").toFile();
+        VaultService vault = new VaultService("haslo", 1000);
+        vault.saveToFile(file);
+        String id = vault.addEntry("example.com", "user", "secret");
+        vault.editEntryById(id, "example.com", "user", "changed");
+        vault.addNote("tytul", "tresc");
+        vault.flush();
+
+        VaultService recovered = VaultService.loadFromFile(file, "haslo");
+        try {
+            assertEquals("changed", recovered.getEntryById(id).getPassword());
+            assertEquals(1, recovered.getNotes().size());
+        } finally {
+            recovered.close();
+            vault.close();
+        }
+    }
+
+    @Test
+    void closeWithoutChangesLeavesFilesAlone() throws IOException {
+        File file = dir.resolve("vault.dat").toFile();
+        VaultService vault = new VaultService("haslo", 1000);
+        vault.addEntry("example.com", "user", "secret");
+        vault.saveToFile(file);
+        vault.close();
+        Map<String, String> before = contents();
+
+        VaultService.loadFromFile(file, "haslo").close();
+        assertEquals(before, contents());
+        VaultJournal.State[] state = new VaultJournal.State[1];
+        replay(dir.resolve("vault.dat.journal"), 0, state);
+        assertEquals(0, state[0].frameBytes());
+    }
+
+    @Test
+    void closeSnapshotsReplayedFrames() throws IOException {
+        File file = dir.resolve("vault.dat").toFile();
+        VaultService vault = new VaultService("haslo", 1000);
+        vault.saveToFile(file);
+        String id = vault.addEntry("example.com", "user", "secret");
+        vault.flush();
+        VaultJournal.State[] state = new VaultJournal.State[1];
+        replay(dir.resolve("vault.dat.journal"), 0, state);
+        long generation = state[0].generation;
+
+        VaultService.loadFromFile(file, "haslo").close();
+        replay(dir.resolve("vault.dat.journal"), 0, state);
+        assertEquals(generation + 1, state[0].generation);
+        assertEquals(0, state[0].frameBytes());
+        VaultService reloaded = VaultService.loadFromFile(file, "haslo");
+        try {
+            assertEquals("secret", reloaded.getEntryById(id).getPassword());
+        } finally {
+            reloaded.close();
+            vault.close();
+        }
+    }
+
+    private Map<String, String> contents() throws IOException {
+        Map<String, String> contents = new TreeMap<>();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path path : files.filter(Files::isRegularFile).toList()) {
+                contents.put(dir.relativize(path).toString(),
+                        Files.getLastModifiedTime(path) + " " + Arrays.hashCode(Files.readAllBytes(path)));
+            }
+        }
+        return contents;
+    }
+}
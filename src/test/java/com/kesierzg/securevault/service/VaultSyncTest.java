@@ -0,0 +1,183 @@
+package com.kesierzg.securevault.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class VaultSyncTest {
+
+    private static final String PASSWORD = "haslo";
+
+    @TempDir
+    Path dir;
+
+    private File local;
+    private File remote;
+    private final List<String> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        local = dir.resolve("local/vault.dat").toFile();
+        remote = dir.resolve("remote/vault.dat").toFile();
+        local.getParentFile().mkdirs();
+        remote.getParentFile().mkdirs();
+        VaultService vault = new VaultService(PASSWORD, 1000);
+        for (int i = 0; i < 200; i++) {
+            ids.add(vault.addEntry("site" + i, "user" + i, "pass" + i));
+        }
+        vault.saveToFile(local);
+        SyncResult first = vault.syncWith(remote);
+        vault.close();
+        assertEquals(200, first.getPushed());
+    }
+
+    private VaultService open(File file) {
+        return VaultService.loadFromFile(file, PASSWORD);
+    }
+
+    @Test
+    void mergesIndependentChangesBothWays() {
+        VaultService other = open(remote);
+        other.editEntryById(ids.get(1), "site1", "fromRemote", "x");
+        other.removeEntryById(ids.get(2));
+        String added = other.addEntry("remote-only", "u", "p");
+        other.close();
+
+        VaultService vault = open(local);
+        vault.editEntryById(ids.get(3), "site3", "fromLocal", "y");
+        SyncResult result = vault.syncWith(remote);
+        assertEquals(0, result.getConflicts());
+        assertEquals("fromRemote", vault.getEntryById(ids.get(1)).getUsername());
+        assertNull(vault.getEntryById(ids.get(2)));
+        assertEquals("remote-only", vault.getEntryById(added).getWebsite());
+        vault.close();
+
+        VaultService merged = open(remote);
+        assertEquals("fromLocal", merged.getEntryById(ids.get(3)).getUsername());
+        assertEquals(200, merged.getEntries().size());
+        merged.close();
+    }
+
+    @Test
+    void higherRevisionWinsConflict() {
+        VaultService other = open(remote);
+        other.editEntryById(ids.get(5), "site5", "remote", "r");
+        other.close();
+
+        VaultService vault = open(local);
+        vault.editEntryById(ids.get(5), "site5", "local", "l1");
+        vault.editEntryById(ids.get(5), "site5", "local", "l2");
+        SyncResult result = vault.syncWith(remote);
+        assertEquals(1, result.getConflicts());
+        assertEquals("l2", vault.getEntryById(ids.get(5)).getPassword());
+        vault.close();
+
+        VaultService merged = open(remote);
+        assertEquals("l2", merged.getEntryById(ids.get(5)).getPassword());
+        merged.close();
+    }
+
+    @Test
+    void equalRevisionConflictConvergesOnBothSides() throws IOException {
+        VaultService other = open(remote);
+        other.editEntryById(ids.get(7), "site7", "remote", "r");
+        other.close();
+
+        VaultService vault = open(local);
+        vault.editEntryById(ids.get(7), "site7", "local", "l");
+        SyncResult result = vault.syncWith(remote);
+        assertEquals(1, result.getConflicts());
+        String winner = vault.getEntryById(ids.get(7)).getUsername();
+        vault.close();
+
+        VaultService merged = open(remote);
+        assertEquals(winner, merged.getEntryById(ids.get(7)).getUsername());
+        merged.close();
+        assertEquals(0, new VaultSync().sync(local, remote, PASSWORD).getSegmentsCompared());
+        assertEquals(0, new VaultSync().sync(remote, local, PASSWORD).getSegmentsCompared());
+    }
+
+    @Test
+    void deletionBeatsOlderEdit() {
+        VaultService other = open(remote);
+        other.editEntryById(ids.get(9), "site9", "edited", "e");
+        other.close();
+        VaultService otherAgain = open(remote);
+        otherAgain.removeEntryById(ids.get(9));
+        otherAgain.close();
+
+        VaultService vault = open(local);
+        vault.editEntryById(ids.get(9), "site9", "local", "l");
+        vault.syncWith(remote);
+        assertNull(vault.getEntryById(ids.get(9)));
+        vault.close();
+    }
+
+    @Test
+    void keepsEditsMadeWhileSyncing() throws InterruptedException {
+        VaultService other = open(remote);
+        for (int i = 0; i < 200; i += 2) {
+            other.editEntryById(ids.get(i), "site" + i, "remote", "r");
+        }
+        other.close();
+
+        VaultService vault = open(local);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicInteger lastEdit = new AtomicInteger();
+        Thread editor = Thread.ofPlatform().start(() -> {
+            for (int n = 1; !done.get(); n++) {
+                vault.editEntryById(ids.get(1), "site1", "edit" + n, "e");
+                lastEdit.set(n);
+            }
+        });
+        SyncResult result;
+        try {
+            result = vault.syncWith(remote);
+        } finally {
+            done.set(true);
+            editor.join();
+        }
+        assertEquals(100, result.getPulled());
+        assertEquals("remote", vault.getEntryById(ids.get(0)).getUsername());
+        assertEquals("edit" + lastEdit.get(), vault.getEntryById(ids.get(1)).getUsername());
+        vault.close();
+
+        VaultService reloaded = open(local);
+        assertEquals("edit" + lastEdit.get(), reloaded.getEntryById(ids.get(1)).getUsername());
+        assertEquals("remote", reloaded.getEntryById(ids.get(198)).getUsername());
+        reloaded.close();
+    }
+
+    @Test
+    void repeatedSyncComparesNothing() {
+        VaultService vault = open(local);
+        assertEquals(0, vault.syncWith(remote).getSegmentsCompared());
+        vault.close();
+    }
+
+    @Test
+    void refusesRemoteWithPendingJournal() {
+        VaultService other = open(remote);
+        other.addEntry("pending", "u", "p");
+        other.flush();
+
+        VaultService vault = open(local);
+        try {
+            assertThrows(RuntimeException.class, () -> vault.syncWith(remote));
+        } finally {
+            vault.close();
+            other.close();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.kesierzg.securevault.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class VaultWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reportsBackgroundFailureAndBlocksCommitsUntilRetrySucceeds() throws Exception {
+        File file = dir.resolve("vault.dat").toFile();
+        VaultService vault = new VaultService("haslo", 1000);
+        vault.saveToFile(file);
+        vault.addEntry("a.pl", "u", "p");
+        vault.flush();
+
+        Path segments = SegmentedVaultFormat.segmentDirectory(file);
+        Path moved = dir.resolve("moved");
+        Files.move(segments, moved);
+        Files.writeString(segments, "zajete");
+        CountDownLatch failed = new CountDownLatch(1);
+        AtomicReference<IOException> reported = new AtomicReference<>();
+        AtomicInteger reports = new AtomicInteger();
+        vault.addWriteFailureListener(e -> {
+            reported.set(e);
+            reports.incrementAndGet();
+            failed.countDown();
+        });
+        vault.changeMasterPassword("nowe", 1000);
+
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        assertNotNull(reported.get());
+        assertThrows(RuntimeException.class, () -> vault.addEntry("b.pl", "u", "p"));
+        assertThrows(RuntimeException.class, vault::flush);
+
+        Files.delete(segments);
+        Files.move(moved, segments);
+        vault.flush();
+        vault.addEntry("c.pl", "u", "p");
+        vault.close();
+
+        VaultService reloaded = VaultService.loadFromFile(file, "nowe");
+        assertEquals(2, reloaded.getEntries().size());
+        assertEquals(1, reports.get());
+        reloaded.close();
+    }
+}